@@ -2,6 +2,7 @@ plugins {
 	java
 	id("org.springframework.boot") version "4.0.0"
 	id("io.spring.dependency-management") version "1.1.7"
+	id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "com.lostedin"
@@ -33,6 +34,8 @@ dependencies {
     implementation("org.springframework.boot:spring-boot-starter-web:4.0.0")
     // Thymeleaf view engine for serving HTML templates
     implementation("org.springframework.boot:spring-boot-starter-thymeleaf:4.0.0")
+    // Micrometer metrics, exposed through /actuator/metrics
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
     compileOnly("org.projectlombok:lombok")
     annotationProcessor("org.projectlombok:lombok")
     testImplementation("org.springframework.boot:spring-boot-starter-data-jpa-test")
@@ -45,6 +48,12 @@ dependencies {
     // For MatrixToImageWriter and BufferedImage helpers
     implementation("com.google.zxing:javase:3.5.4")
 
+    // In-memory caches (W-TinyLFU eviction); version managed by Spring Boot
+    implementation("com.github.ben-manes.caffeine:caffeine")
+    // Hibernate second-level cache through JCache, with Caffeine as the provider
+    implementation("org.hibernate.orm:hibernate-jcache")
+    implementation("com.github.ben-manes.caffeine:jcache")
+
     // https://mvnrepository.com/artifact/com.squareup.okhttp3/okhttp
     implementation("com.squareup.okhttp3:okhttp:5.3.2")
 
@@ -61,3 +70,14 @@ dependencies {
 tasks.withType<Test> {
 	useJUnitPlatform()
 }
+
+// Benchmarks live in src/jmh/java and run with `./gradlew jmh`.
+// Results are written as JSON per project version so runs can be diffed between releases.
+jmh {
+    jmhVersion = "1.37"
+    profilers = listOf("gc") // reports gc.alloc.rate and gc.alloc.rate.norm per benchmark
+    resultFormat = "JSON"
+    resultsFile = layout.buildDirectory.file("results/jmh/results-${project.version}.json")
+    // Narrow a run with e.g. -PjmhIncludes=PasswordEncrypter
+    providers.gradleProperty("jmhIncludes").orNull?.let { includes = listOf(it) }
+}
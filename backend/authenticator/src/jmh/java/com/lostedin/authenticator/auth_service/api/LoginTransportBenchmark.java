@@ -0,0 +1,74 @@
+package com.lostedin.authenticator.auth_service.api;
+
+import com.lostedin.authenticator.AuthenticatorApplication;
+import com.lostedin.authenticator.auth_service.dto.ApiMessageDto;
+import com.lostedin.authenticator.auth_service.dto.AuthDto;
+import com.lostedin.authenticator.auth_service.dto.UserIdWithResponseDto;
+import com.lostedin.authenticator.auth_service.service.AuthorizationService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-login latency through {@link AuthorizationService} for each {@link UserAPI} transport.
+ * Boots the full application, so the database from application.yml must be reachable.
+ * The schema is updated rather than recreated, so existing data is left alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class LoginTransportBenchmark {
+
+    private static final int PORT = 18080;
+    private static final String PASSWORD = "benchmark-password";
+
+    @Param({"http", "in-process"})
+    public String transport;
+
+    private ConfigurableApplicationContext context;
+    private AuthorizationService authorizationService;
+    private AuthDto login;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(AuthenticatorApplication.class)
+                .properties(
+                        "server.port=" + PORT,
+                        "user-api.transport=" + transport,
+                        "user-api.base-url=http://localhost:" + PORT + "/user",
+                        "spring.jpa.hibernate.ddl-auto=update",
+                        "login.throttle.enabled=false",
+                        "logging.level.com.lostedin.authenticator=WARN"
+                )
+                .run();
+        authorizationService = context.getBean(AuthorizationService.class);
+
+        login = AuthDto.builder().username("bench-" + UUID.randomUUID()).password(PASSWORD).build();
+        ApiMessageDto created = authorizationService.registerUser(login).join();
+        if (created.getStatus() != 201) {
+            throw new IllegalStateException("Could not create benchmark user: " + created);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public UserIdWithResponseDto login() {
+        return authorizationService.authorizeUser(login, "127.0.0.1").join();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public UserIdWithResponseDto loginContended() {
+        return authorizationService.authorizeUser(login, "127.0.0.1").join();
+    }
+}
@@ -0,0 +1,66 @@
+package com.lostedin.authenticator.auth_service.model.token;
+
+import com.lostedin.authenticator.auth_service.config.SigningProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Access token issuing and validation on the auth side, per signing algorithm, with and without the verified-token cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtUtilBenchmark {
+
+    // Same dev secret as application.yml
+    private static final String SECRET = "bXktdmVyeS1sb25nLWRldi1zZWNyZXQta2V5LXNob3VsZC1iZS1iYXNlNjQtMzItYnl0ZXM=";
+
+    @Param({"HS", "EdDSA", "ES256"})
+    public String algorithm;
+
+    @Param({"false", "true"})
+    public boolean cache;
+
+    private JwtUtil jwtUtil;
+    private UUID userId;
+    private String accessToken;
+
+    @Setup
+    public void setUp() {
+        SigningProperties signing = new SigningProperties();
+        signing.setAlgorithm(algorithm); // asymmetric modes generate an ephemeral key
+        jwtUtil = new JwtUtil(SECRET, 900, 1209600, cache, 100_000, new SimpleMeterRegistry(),
+                new SigningKeyStore(signing, 900, 1209600), null);
+        userId = UUID.randomUUID();
+        accessToken = jwtUtil.generateAccessToken(userId);
+    }
+
+    @Benchmark
+    public String generateAccessToken() {
+        return jwtUtil.generateAccessToken(userId);
+    }
+
+    @Benchmark
+    public Optional<UUID> validateAccessToken() {
+        return jwtUtil.validateAccessToken(accessToken);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String generateAccessTokenContended() {
+        return jwtUtil.generateAccessToken(userId);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Optional<UUID> validateAccessTokenContended() {
+        return jwtUtil.validateAccessToken(accessToken);
+    }
+}
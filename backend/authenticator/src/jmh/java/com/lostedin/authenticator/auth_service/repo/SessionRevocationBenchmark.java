@@ -0,0 +1,87 @@
+package com.lostedin.authenticator.auth_service.repo;
+
+import com.lostedin.authenticator.AuthenticatorApplication;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Revoking every session of a user that has {@code sessions} of them: one {@link SessionCache#deleteById} per
+ * session (what logging out everywhere took before) against one {@link SessionCache#deleteAllByUserId}.
+ * The table also holds sessions of other users so the user_id index has to do the filtering.
+ * Boots the full application, so the database from application.yml must be reachable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class SessionRevocationBenchmark {
+
+    private static final int BACKGROUND_SESSIONS = 200_000;
+
+    @Param({"100", "1000", "5000"})
+    public int sessions;
+
+    private ConfigurableApplicationContext context;
+    private SessionCache sessionCache;
+    private JdbcTemplate jdbcTemplate;
+    private UUID userId;
+    private List<UUID> sessionIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(AuthenticatorApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.jpa.hibernate.ddl-auto=update",
+                        "session.purge.enabled=false",
+                        "logging.level.com.lostedin.authenticator=WARN"
+                )
+                .run();
+        sessionCache = context.getBean(SessionCache.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        Long existing = jdbcTemplate.queryForObject("SELECT count(*) FROM session", Long.class);
+        if (existing == null || existing < BACKGROUND_SESSIONS) {
+            jdbcTemplate.update("""
+                    INSERT INTO session (id, user_id, refresh_token, expires_at)
+                    SELECT gen_random_uuid(), gen_random_uuid(), 'background', now() + interval '14 days'
+                    FROM generate_series(1, ?)
+                    """, BACKGROUND_SESSIONS);
+        }
+        jdbcTemplate.execute("ANALYZE session");
+    }
+
+    @Setup(Level.Invocation)
+    public void createSessions() {
+        userId = UUID.randomUUID();
+        sessionIds = jdbcTemplate.queryForList("""
+                INSERT INTO session (id, user_id, refresh_token, expires_at)
+                SELECT gen_random_uuid(), ?, 'benchmark', now() + interval '14 days'
+                FROM generate_series(1, ?)
+                RETURNING id
+                """, UUID.class, userId, sessions);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int oneByOne() {
+        for (UUID id : sessionIds) sessionCache.deleteById(id);
+        return sessionIds.size();
+    }
+
+    @Benchmark
+    public int bulk() {
+        return sessionCache.deleteAllByUserId(userId);
+    }
+}
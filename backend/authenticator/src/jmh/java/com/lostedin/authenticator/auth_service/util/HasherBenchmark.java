@@ -0,0 +1,49 @@
+package com.lostedin.authenticator.auth_service.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BCrypt (cost 12) hashing of refresh tokens as done on every session create/refresh.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class HasherBenchmark {
+
+    // Shaped like a refresh token; bcrypt only looks at the first 72 bytes
+    private static final String TOKEN = "eyJhbGciOiJIUzI1NiJ9.eyJzdWIiOiI2ZjFkYjY4Ny0zZTBiLTQ5ZjAtODY2Ny1hYjQ1Y2Q3ODkwMTIifQ.sig";
+
+    private String stored;
+
+    @Setup
+    public void setUp() {
+        stored = Hasher.bcrypt(TOKEN);
+    }
+
+    @Benchmark
+    public String bcrypt() {
+        return Hasher.bcrypt(TOKEN);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return Hasher.verify(TOKEN, stored);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String bcryptContended() {
+        return Hasher.bcrypt(TOKEN);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean verifyContended() {
+        return Hasher.verify(TOKEN, stored);
+    }
+}
@@ -0,0 +1,74 @@
+package com.lostedin.authenticator.user_service.model.token;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.SecretKey;
+import java.time.Instant;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Access token verification: the fast path against a prebuilt JJWT parser, on a token shaped like JwtUtil's.
+ * Compare gc.alloc.rate.norm for per-call allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HmacJwtFastVerifierBenchmark {
+
+    // Same dev secret as application.yml (424 bits, so JJWT signs with HS384)
+    private static final String SECRET = "bXktdmVyeS1sb25nLWRldi1zZWNyZXQta2V5LXNob3VsZC1iZS1iYXNlNjQtMzItYnl0ZXM=";
+
+    private JwtParser parser;
+    private HmacJwtFastVerifier fastVerifier;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        SecretKey key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        parser = Jwts.parser().verifyWith(key).build();
+        fastVerifier = new HmacJwtFastVerifier(key);
+        Instant now = Instant.now();
+        token = Jwts.builder()
+                .subject(UUID.randomUUID().toString())
+                .issuedAt(Date.from(now))
+                .expiration(Date.from(now.plusSeconds(3600)))
+                .signWith(key)
+                .compact();
+        if (fastVerifier.verify(token, System.currentTimeMillis()) == null)
+            throw new IllegalStateException("Fast path did not recognise the token");
+    }
+
+    @Benchmark
+    public UUID jjwt() {
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        return UUID.fromString(claims.getSubject());
+    }
+
+    @Benchmark
+    public UUID fastPath() {
+        return fastVerifier.verify(token, System.currentTimeMillis()).subject();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public UUID jjwtContended() {
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        return UUID.fromString(claims.getSubject());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public UUID fastPathContended() {
+        return fastVerifier.verify(token, System.currentTimeMillis()).subject();
+    }
+}
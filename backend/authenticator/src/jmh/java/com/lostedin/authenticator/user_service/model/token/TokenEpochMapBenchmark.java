@@ -0,0 +1,80 @@
+package com.lostedin.authenticator.user_service.model.token;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the revocation check every access-token validation now pays, against a
+ * {@code ConcurrentHashMap<UUID, Long>} holding the same epochs. Most validated users have no epoch, so lookups
+ * are for absent users unless {@code hit} is set. {@code contended} runs a writer raising epochs alongside.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class TokenEpochMapBenchmark {
+
+    private static final long TTL = 900;
+    private static final int LOOKUP_KEYS = 1 << 16;
+
+    @Param({"1000", "100000"})
+    public int entries;
+
+    @Param({"false", "true"})
+    public boolean hit;
+
+    private TokenEpochMap map;
+    private ConcurrentHashMap<UUID, Long> chm;
+    private UUID[] lookups;
+    private long now;
+
+    @Setup
+    public void setUp() {
+        now = System.currentTimeMillis() / 1000L;
+        map = new TokenEpochMap(1024, TTL);
+        chm = new ConcurrentHashMap<>();
+        UUID[] revoked = new UUID[entries];
+        for (int i = 0; i < entries; i++) {
+            revoked[i] = UUID.randomUUID();
+            map.raise(revoked[i], now, now);
+            chm.put(revoked[i], now);
+        }
+        lookups = new UUID[LOOKUP_KEYS];
+        for (int i = 0; i < LOOKUP_KEYS; i++) {
+            lookups[i] = hit ? revoked[i % entries] : UUID.randomUUID();
+        }
+    }
+
+    @Benchmark
+    public boolean epochMap() {
+        UUID userId = lookups[ThreadLocalRandom.current().nextInt(LOOKUP_KEYS)];
+        return map.isRevoked(userId, now - 1, now);
+    }
+
+    @Benchmark
+    public boolean concurrentHashMap() {
+        UUID userId = lookups[ThreadLocalRandom.current().nextInt(LOOKUP_KEYS)];
+        Long epoch = chm.get(userId);
+        return epoch != null && now < epoch + TTL && now - 1 < epoch;
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public boolean contendedRead() {
+        return epochMap();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void contendedWrite() {
+        map.raise(lookups[ThreadLocalRandom.current().nextInt(LOOKUP_KEYS)], now, now);
+    }
+}
@@ -0,0 +1,59 @@
+package com.lostedin.authenticator.user_service.model.token;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Access token validation on the user side, which runs on every authenticated request.
+ * With {@code cache=true} every call after the first is a cache hit for the same token.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenValidatorBenchmark {
+
+    // Same dev secret as application.yml
+    private static final String SECRET = "bXktdmVyeS1sb25nLWRldi1zZWNyZXQta2V5LXNob3VsZC1iZS1iYXNlNjQtMzItYnl0ZXM=";
+
+    @Param({"false", "true"})
+    public boolean cache;
+
+    private TokenValidator tokenValidator;
+    private String accessToken;
+
+    @Setup
+    public void setUp() {
+        tokenValidator = new TokenValidator(SECRET, "HS", true, cache, 100_000, new SimpleMeterRegistry(), null, null);
+        // Shaped exactly like the tokens JwtUtil issues
+        Instant now = Instant.now();
+        accessToken = Jwts.builder()
+                .subject(UUID.randomUUID().toString())
+                .issuedAt(Date.from(now))
+                .expiration(Date.from(now.plusSeconds(3600)))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)))
+                .compact();
+    }
+
+    @Benchmark
+    public Optional<UUID> validateAccessToken() {
+        return tokenValidator.validateAccessToken(accessToken);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Optional<UUID> validateAccessTokenContended() {
+        return tokenValidator.validateAccessToken(accessToken);
+    }
+}
@@ -0,0 +1,65 @@
+package com.lostedin.authenticator.user_service.model.two_fa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TOTP code generation and verification (window = 1, i.e. three code computations per attempt):
+ * the original {@link TOTP} against {@link TotpVerifier}. Compare gc.alloc.rate.norm for per-call allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TotpBenchmark {
+
+    private final TOTP totp = new TOTP();
+    private final TotpVerifier verifier = new TotpVerifier("HmacSHA1", 6, 30, 1);
+
+    private String secret;
+    private String code;
+    private long now;
+
+    @Setup
+    public void setUp() {
+        secret = totp.generateSecret(20);
+        code = totp.currentCode(secret);
+        now = System.currentTimeMillis() / 1000L;
+    }
+
+    @Benchmark
+    public String codeAt() {
+        return totp.codeAt(secret, now, 6, 30, "HmacSHA1");
+    }
+
+    @Benchmark
+    public boolean verifyCode() {
+        return totp.verifyCode(secret, code, 1);
+    }
+
+    @Benchmark
+    public long verifierVerifyStep() {
+        return verifier.verifyStep(secret, code, now);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String codeAtContended() {
+        return totp.codeAt(secret, now, 6, 30, "HmacSHA1");
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean verifyCodeContended() {
+        return totp.verifyCode(secret, code, 1);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long verifierVerifyStepContended() {
+        return verifier.verifyStep(secret, code, now);
+    }
+}
@@ -0,0 +1,90 @@
+package com.lostedin.authenticator.user_service.repo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Username lookup as {@link UserRepo#getByUsername} issues it, against a 10M-row copy of the users table,
+ * without an index (the old sequential scan) and with the case-insensitive unique index from import.sql.
+ * <p>
+ * Uses its own table in the database from application.yml (override with -Dbench.jdbc.url/user/password);
+ * seeding takes a minute or two the first time, later runs reuse the rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class UsernameLookupBenchmark {
+
+    private static final int ROWS = 10_000_000;
+    private static final String TABLE = "username_lookup_bench";
+
+    @Param({"none", "lower-unique"})
+    public String index;
+
+    private Connection connection;
+    private PreparedStatement lookup;
+
+    @Setup
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(
+                System.getProperty("bench.jdbc.url", "jdbc:postgresql://localhost:5433/secure_auth_system"),
+                System.getProperty("bench.jdbc.user", "postgres"),
+                System.getProperty("bench.jdbc.password", "postgres"));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " (id uuid PRIMARY KEY, username varchar(255) NOT NULL)");
+            if (rowCount(statement) != ROWS) {
+                statement.execute("TRUNCATE " + TABLE);
+                statement.execute("INSERT INTO " + TABLE + " SELECT gen_random_uuid(), 'user-' || g FROM generate_series(1, " + ROWS + ") g");
+            }
+            statement.execute("DROP INDEX IF EXISTS ux_" + TABLE + "_lower");
+            if (index.equals("lower-unique")) {
+                statement.execute("CREATE UNIQUE INDEX ux_" + TABLE + "_lower ON " + TABLE + " (lower(username))");
+            }
+            statement.execute("ANALYZE " + TABLE);
+        }
+        lookup = connection.prepareStatement("SELECT id, username FROM " + TABLE + " WHERE lower(username) = lower(?)");
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public UUID existing() throws SQLException {
+        String username = "user-" + (1 + ThreadLocalRandom.current().nextInt(ROWS));
+        return find(ThreadLocalRandom.current().nextBoolean() ? username : username.toUpperCase(Locale.ROOT));
+    }
+
+    @Benchmark
+    public UUID missing() throws SQLException {
+        return find("nobody-" + ThreadLocalRandom.current().nextInt(ROWS));
+    }
+
+    private UUID find(String username) throws SQLException {
+        lookup.setString(1, username);
+        try (ResultSet rs = lookup.executeQuery()) {
+            return rs.next() ? rs.getObject(1, UUID.class) : null;
+        }
+    }
+
+    private static long rowCount(Statement statement) throws SQLException {
+        try (ResultSet rs = statement.executeQuery("SELECT count(*) FROM " + TABLE)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
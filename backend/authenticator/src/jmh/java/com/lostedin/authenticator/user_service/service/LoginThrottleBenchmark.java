@@ -0,0 +1,50 @@
+package com.lostedin.authenticator.user_service.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the login throttle check that now precedes every password verification, over many distinct
+ * usernames and IPs so the table stays under eviction pressure. Limits are high enough that nothing is rejected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class LoginThrottleBenchmark {
+
+    private static final int KEYS = 1 << 18;
+
+    private LoginThrottle throttle;
+    private String[] usernames;
+    private String[] ips;
+
+    @Setup
+    public void setUp() {
+        throttle = new LoginThrottle(new SimpleMeterRegistry(), true, 65536, 1_000_000, 1e9, 1_000_000, 1e9, "");
+        usernames = new String[KEYS];
+        ips = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            usernames[i] = "user-" + i;
+            ips[i] = "10." + (i >>> 16) + "." + ((i >>> 8) & 0xFF) + "." + (i & 0xFF);
+        }
+    }
+
+    @Benchmark
+    public void acquire() {
+        int i = ThreadLocalRandom.current().nextInt(KEYS);
+        throttle.acquire(usernames[i], ips[i]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void acquireContended() {
+        int i = ThreadLocalRandom.current().nextInt(KEYS);
+        throttle.acquire(usernames[i], ips[i]);
+    }
+}
@@ -0,0 +1,49 @@
+package com.lostedin.authenticator.user_service.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PBKDF2 password hashing as used by registration, login and password change.
+ * The contended variants run one benchmark thread per core to show how logins compete for CPU.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class PasswordEncrypterBenchmark {
+
+    private static final String PASSWORD = "correct-horse-battery-staple";
+
+    private String stored;
+
+    @Setup
+    public void setUp() {
+        stored = PasswordEncrypter.hash(PASSWORD);
+    }
+
+    @Benchmark
+    public String hash() {
+        return PasswordEncrypter.hash(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return PasswordEncrypter.verify(PASSWORD, stored);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String hashContended() {
+        return PasswordEncrypter.hash(PASSWORD);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean verifyContended() {
+        return PasswordEncrypter.verify(PASSWORD, stored);
+    }
+}
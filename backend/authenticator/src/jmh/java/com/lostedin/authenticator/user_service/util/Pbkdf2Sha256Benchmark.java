@@ -0,0 +1,51 @@
+package com.lostedin.authenticator.user_service.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One PBKDF2-HMAC-SHA256 derivation at the default login cost: the JDK's SecretKeyFactory (what
+ * PasswordEncrypter used before) against Pbkdf2Sha256. Compare gc.alloc.rate.norm for allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class Pbkdf2Sha256Benchmark {
+
+    private static final char[] PASSWORD = "correct-horse-battery-staple".toCharArray();
+    private static final byte[] SALT = "0123456789abcdef".getBytes();
+
+    @Param({"210000"})
+    public int iterations;
+
+    @Benchmark
+    public byte[] jdk() throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(PASSWORD, SALT, iterations, 256);
+        return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+    }
+
+    @Benchmark
+    public byte[] precomputedPads() {
+        return Pbkdf2Sha256.derive(PASSWORD, SALT, iterations, 256);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] jdkContended() throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(PASSWORD, SALT, iterations, 256);
+        return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] precomputedPadsContended() {
+        return Pbkdf2Sha256.derive(PASSWORD, SALT, iterations, 256);
+    }
+}
@@ -0,0 +1,71 @@
+package com.lostedin.authenticator.user_service.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QR rendering for the otpauth URI served by /totp/totp-qr: the direct 1-bit PNG encoder and SVG output against
+ * the previous BufferedImage + ImageIO path. Output sizes are logged once per fork; compare gc.alloc.rate.norm for
+ * allocation per image.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class QrUtilBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(QrUtilBenchmark.class);
+
+    private static final String URI = "otpauth://totp/Secure-Authorizer%3Aalice?secret=JBSWY3DPEHPK3PXPJBSWY3DPEHPK3PXP"
+            + "&issuer=Secure-Authorizer&period=30&digits=6&algorithm=SHA1";
+
+    @Param({"256"})
+    public int size;
+
+    @Setup(Level.Trial)
+    public void logSizes() throws IOException {
+        log.info("size={}: direct png {} B, imageio png {} B, svg {} B", size,
+                generatePng().length, imageIoPng().length, generateSvg().length);
+    }
+
+    @Benchmark
+    public byte[] generatePng() {
+        return QrUtil.generatePng(URI, size);
+    }
+
+    @Benchmark
+    public byte[] generateSvg() {
+        return QrUtil.generateSvg(URI, size).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // The encoder generatePng used before: ARGB BufferedImage through ImageIO
+    @Benchmark
+    public byte[] imageIoPng() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(QrUtil.generateImage(URI, size), "PNG", out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] generatePngContended() {
+        return QrUtil.generatePng(URI, size);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] imageIoPngContended() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(QrUtil.generateImage(URI, size), "PNG", out);
+        return out.toByteArray();
+    }
+}
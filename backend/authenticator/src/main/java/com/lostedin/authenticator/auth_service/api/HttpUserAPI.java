@@ -0,0 +1,160 @@
+package com.lostedin.authenticator.auth_service.api;
+
+import com.lostedin.authenticator.auth_service.dto.ApiMessageDto;
+import com.lostedin.authenticator.auth_service.dto.UserIdWithResponseDto;
+import com.lostedin.authenticator.auth_service.dto.user.UserDataDto;
+import com.lostedin.authenticator.auth_service.exception.InternalAuthServiceError;
+import com.lostedin.authenticator.user_service.exception.LoginThrottledException;
+import com.lostedin.authenticator.user_service.service.LoginThrottle;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "user-api.transport", havingValue = "http", matchIfMissing = true)
+public class HttpUserAPI implements UserAPI {
+
+    private final OkHttpClient client;
+    private final String baseUrl;
+    public static final MediaType JSON = MediaType.get("application/json");
+    private final ObjectMapper objectMapper;
+
+    public HttpUserAPI(
+            OkHttpClient client,
+            ObjectMapper objectMapper,
+            @Value("${user-api.base-url:http://localhost:8080/user}") String baseUrl
+    ) {
+        this.client = client;
+        this.objectMapper = objectMapper;
+        this.baseUrl = baseUrl;
+    }
+
+    @Override
+    public Optional<UserDataDto> getUser(UUID id) {
+        return execute(getUserRequest(id), this::readUser);
+    }
+
+    @Override
+    public UserIdWithResponseDto validate(String username, String password, String clientIp) {
+        log.debug("Validating user {} with password {}", username, password);
+        return execute(validateRequest(username, password, clientIp), this::readUserIdResponse);
+    }
+
+    @Override
+    public UserIdWithResponseDto createUser(String username, String password) {
+        return execute(createUserRequest(username, password), this::readUserIdResponse);
+    }
+
+    @Override
+    public CompletableFuture<Optional<UserDataDto>> getUserAsync(UUID id) {
+        return enqueue(getUserRequest(id), this::readUser);
+    }
+
+    @Override
+    public CompletableFuture<UserIdWithResponseDto> validateAsync(String username, String password, String clientIp) {
+        log.debug("Validating user {} with password {}", username, password);
+        return enqueue(validateRequest(username, password, clientIp), this::readUserIdResponse);
+    }
+
+    @Override
+    public CompletableFuture<UserIdWithResponseDto> createUserAsync(String username, String password) {
+        return enqueue(createUserRequest(username, password), this::readUserIdResponse);
+    }
+
+    private Request getUserRequest(UUID id) {
+        return new Request.Builder()
+                .url(baseUrl + "/me")
+                .post(RequestBody.create(objectMapper.writeValueAsString(id), JSON))
+                .build();
+    }
+
+    // The user service sees this service as the peer; the header tells its login throttle who the client is
+    private Request validateRequest(String username, String password, String clientIp) {
+        UserDataDto user = UserDataDto.builder().username(username).password(password).build();
+        Request.Builder builder = new Request.Builder();
+        if (clientIp != null) builder.header(LoginThrottle.CLIENT_IP_HEADER, clientIp);
+        return builder
+                .url(baseUrl + "/validate")
+                .post(RequestBody.create(objectMapper.writeValueAsString(user),JSON))
+                .build();
+    }
+
+    private Request createUserRequest(String username, String password) {
+        UserDataDto user = UserDataDto.builder().username(username).password(password).build();
+        return new Request.Builder()
+                .url(baseUrl + "/create")
+                .post(RequestBody.create(objectMapper.writeValueAsString(user),JSON))
+                .build();
+    }
+
+    private Optional<UserDataDto> readUser(Response response) throws IOException {
+        String body = response.body().string();
+        if (!response.isSuccessful()) {
+            throw new InternalAuthServiceError(objectMapper.readValue(body, ApiMessageDto.class).getMessage());
+        }
+        return Optional.of(objectMapper.readValue(body, UserDataDto.class));
+    }
+
+    private UserIdWithResponseDto readUserIdResponse(Response response) throws IOException {
+        String body = response.body().string();
+        if (response.code() == 429) {
+            // rethrown so /auth answers 429 with the user service's Retry-After
+            String retryAfter = response.header("Retry-After");
+            throw new LoginThrottledException(objectMapper.readValue(body, ApiMessageDto.class).getMessage(),
+                    retryAfter == null ? 1 : Long.parseLong(retryAfter.trim()));
+        }
+        log.info(body);
+        return objectMapper.readValue(body, UserIdWithResponseDto.class);
+    }
+
+    private <T> T execute(Request request, ResponseReader<T> reader) {
+        try (Response response = client.newCall(request).execute()) {
+            return reader.read(response);
+        } catch (IOException e) {
+            throw new InternalAuthServiceError(e.getMessage());
+        }
+    }
+
+    // Runs the call on OkHttp's dispatcher; the response is read on the dispatcher thread that completes it
+    private <T> CompletableFuture<T> enqueue(Request request, ResponseReader<T> reader) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Call call = client.newCall(request);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(new InternalAuthServiceError(e.getMessage()));
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    future.complete(reader.read(response));
+                } catch (IOException e) {
+                    future.completeExceptionally(new InternalAuthServiceError(e.getMessage()));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        // e.g. the MVC async request timed out - no point in keeping the connection busy
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) call.cancel();
+        });
+        return future;
+    }
+
+    @FunctionalInterface
+    private interface ResponseReader<T> {
+        T read(Response response) throws IOException;
+    }
+
+}
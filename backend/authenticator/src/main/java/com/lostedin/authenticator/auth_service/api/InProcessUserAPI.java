@@ -0,0 +1,105 @@
+package com.lostedin.authenticator.auth_service.api;
+
+import com.lostedin.authenticator.auth_service.dto.UserIdWithResponseDto;
+import com.lostedin.authenticator.auth_service.dto.user.UserDataDto;
+import com.lostedin.authenticator.auth_service.exception.InternalAuthServiceError;
+import com.lostedin.authenticator.user_service.dto.ResponseDto;
+import com.lostedin.authenticator.user_service.dto.SignUpDto;
+import com.lostedin.authenticator.user_service.service.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Calls {@link UserService} directly, for deployments where the auth and user services share a JVM.
+ * Saves the JSON round trip, the loopback socket and the second request thread that {@link HttpUserAPI} costs.
+ * The async variants run on Spring Boot's application task executor so the calling request thread is released.
+ * Password hashing is not waited for there: the executor thread only does the lookup, queues the KDF work and
+ * returns, so the KDF pool's bounded queue is what limits concurrent logins and a full queue fails the future
+ * with {@link com.lostedin.authenticator.user_service.exception.KdfOverloadedException} (503 + Retry-After).
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "user-api.transport", havingValue = "in-process")
+public class InProcessUserAPI implements UserAPI {
+
+    private final UserService userService;
+    private final Executor executor;
+
+    public InProcessUserAPI(
+            UserService userService,
+            @Qualifier("applicationTaskExecutor") Executor executor
+    ) {
+        this.userService = userService;
+        this.executor = executor;
+    }
+
+    @Override
+    public Optional<UserDataDto> getUser(UUID id) {
+        ResponseDto response = userService.getUser(id);
+        if (!(response instanceof com.lostedin.authenticator.user_service.dto.UserDataDto user)) {
+            throw new InternalAuthServiceError(response.getMessage());
+        }
+        return Optional.of(UserDataDto.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .password(user.getPassword())
+                .is_2fa_enabled(user.getIs_2fa_enabled())
+                .totp_secret(user.getTotp_secret())
+                .build());
+    }
+
+    @Override
+    public UserIdWithResponseDto validate(String username, String password, String clientIp) {
+        return toUserIdResponse(userService.validateUser(username, password, clientIp));
+    }
+
+    @Override
+    public UserIdWithResponseDto createUser(String username, String password) {
+        return toUserIdResponse(userService.createUser(signUp(username, password)));
+    }
+
+    @Override
+    public CompletableFuture<Optional<UserDataDto>> getUserAsync(UUID id) {
+        return CompletableFuture.supplyAsync(() -> getUser(id), executor);
+    }
+
+    @Override
+    public CompletableFuture<UserIdWithResponseDto> validateAsync(String username, String password, String clientIp) {
+        return CompletableFuture.supplyAsync(() -> userService.validateUserAsync(username, password, clientIp), executor)
+                .thenCompose(hashing -> hashing)
+                .thenApply(InProcessUserAPI::toUserIdResponse);
+    }
+
+    @Override
+    public CompletableFuture<UserIdWithResponseDto> createUserAsync(String username, String password) {
+        return CompletableFuture.supplyAsync(() -> userService.createUserAsync(signUp(username, password)), executor)
+                .thenCompose(hashing -> hashing)
+                .thenApply(InProcessUserAPI::toUserIdResponse);
+    }
+
+    private static SignUpDto signUp(String username, String password) {
+        SignUpDto signUpDto = new SignUpDto();
+        signUpDto.setUsername(username);
+        signUpDto.setPassword(password);
+        return signUpDto;
+    }
+
+    // Same mapping the HTTP transport gets by deserializing the user service's JSON into UserIdWithResponseDto
+    private static UserIdWithResponseDto toUserIdResponse(ResponseDto response) {
+        UserIdWithResponseDto dto = new UserIdWithResponseDto();
+        dto.setStatus(response.getStatus());
+        dto.setMessage(response.getMessage());
+        if (response instanceof com.lostedin.authenticator.user_service.dto.UserDataDto user) {
+            dto.setId(user.getId());
+            dto.setIs_2fa_enabled(user.getIs_2fa_enabled());
+        }
+        return dto;
+    }
+}
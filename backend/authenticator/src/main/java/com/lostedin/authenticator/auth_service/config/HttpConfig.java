@@ -1,5 +1,6 @@
 package com.lostedin.authenticator.auth_service.config;
 
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -11,7 +12,13 @@ public class HttpConfig {
 
     @Bean
     public OkHttpClient okHttpClient(){
+        // Async calls go through the dispatcher, whose default of 5 concurrent requests per host
+        // would serialize logins against the user service
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(256);
+        dispatcher.setMaxRequestsPerHost(256);
         return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
                 .connectTimeout(5, TimeUnit.SECONDS)
                 .readTimeout(5, TimeUnit.SECONDS)
                 .writeTimeout(5, TimeUnit.SECONDS)
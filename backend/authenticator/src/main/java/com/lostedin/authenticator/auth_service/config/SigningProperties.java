@@ -0,0 +1,39 @@
+package com.lostedin.authenticator.auth_service.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@code jwt.signing.*}: which algorithm access and refresh tokens are signed with and, for the asymmetric modes,
+ * the key ring. Keys overlap during rotation: publish the next key (future not-before) ahead of time, then retire
+ * the old one with not-after; it stays published until the tokens it signed have expired.
+ */
+@Data
+@Component
+@ConfigurationProperties("jwt.signing")
+public class SigningProperties {
+
+    /** HS (shared jwt.secret), EdDSA (Ed25519) or ES256 (P-256) */
+    private String algorithm = "HS";
+
+    /** Asymmetric keys; when empty an ephemeral key pair is generated at startup */
+    private List<Key> keys = new ArrayList<>();
+
+    @Data
+    public static class Key {
+        private String kid;
+        /** Base64 PKCS#8 DER; may be omitted for a retired key that is only still published */
+        private String privateKey;
+        /** Base64 X.509 SubjectPublicKeyInfo DER */
+        private String publicKey;
+        /** Not used for signing before this instant (published immediately); null = always */
+        private Instant notBefore;
+        /** Not used for signing from this instant; null = never retired */
+        private Instant notAfter;
+    }
+}
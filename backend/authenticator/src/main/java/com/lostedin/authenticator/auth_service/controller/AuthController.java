@@ -3,10 +3,11 @@ package com.lostedin.authenticator.auth_service.controller;
 import com.lostedin.authenticator.auth_service.dto.ApiMessageDto;
 import com.lostedin.authenticator.auth_service.dto.AuthDto;
 import com.lostedin.authenticator.auth_service.dto.TokenDto;
-import com.lostedin.authenticator.auth_service.dto.UserIdWithResponseDto;
 import com.lostedin.authenticator.auth_service.dto.user.UserIdDto;
+import com.lostedin.authenticator.auth_service.model.token.JwtUtil;
 import com.lostedin.authenticator.auth_service.service.SessionService;
 import com.lostedin.authenticator.auth_service.service.AuthorizationService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -15,6 +16,10 @@ import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
 @Slf4j
 @RestController
 @RequiredArgsConstructor
@@ -23,17 +28,19 @@ public class AuthController {
 
     private final AuthorizationService authService;
     private final SessionService sessionService;
+    private final JwtUtil jwtUtil;
 
+    // Async: the request thread is released while the user service runs the password KDF
     @PostMapping("/authorize")
-    protected ResponseEntity<@NonNull ApiMessageDto> auth(@RequestBody AuthDto authDto){
-        UserIdWithResponseDto response = authService.authorizeUser(authDto);
-        return ResponseEntity.status(response.getStatus()).body(response);
+    protected CompletableFuture<ResponseEntity<@NonNull ApiMessageDto>> auth(@RequestBody AuthDto authDto, HttpServletRequest request){
+        return authService.authorizeUser(authDto, request.getRemoteAddr())
+                .thenApply(response -> ResponseEntity.status(response.getStatus()).body(response));
     }
 
     @PostMapping("/register")
-    protected ResponseEntity<@NonNull ApiMessageDto> register(@RequestBody AuthDto authDto){
-        ApiMessageDto response = authService.registerUser(authDto);
-        return ResponseEntity.status(response.getStatus()).body(response);
+    protected CompletableFuture<ResponseEntity<@NonNull ApiMessageDto>> register(@RequestBody AuthDto authDto){
+        return authService.registerUser(authDto)
+                .thenApply(response -> ResponseEntity.status(response.getStatus()).body(response));
     }
 
     @PostMapping("/create-session")
@@ -82,8 +89,30 @@ public class AuthController {
         return ResponseEntity.status(response.getStatus()).body(response);
     }
 
+    // Signs the user out everywhere: all refresh and access tokens of the user stop working
+    @PostMapping("/revoke-all-sessions")
+    protected ResponseEntity<@NonNull ApiMessageDto> revokeAllSessions(@CookieValue("access-token") String accessToken){
+        Optional<UUID> userId = jwtUtil.validateAccessToken(accessToken);
+        if (userId.isEmpty())
+            return ResponseEntity.status(401).body(ApiMessageDto.builder().status(401).message("Unauthorized").build());
+        ApiMessageDto messageDto = sessionService.revokeAllSessions(userId.get());
+        ResponseCookie accessCookie = ResponseCookie.from("access-token", "")
+                .httpOnly(true)
+                .maxAge(0)
+                .path("/").build();
+        ResponseCookie refreshCookie = ResponseCookie.from("refresh-token","")
+                .httpOnly(true)
+                .maxAge(0)
+                .path("/auth").build();
+        return ResponseEntity.status(messageDto.getStatus())
+                .header(HttpHeaders.SET_COOKIE, accessCookie.toString())
+                .header(HttpHeaders.SET_COOKIE, refreshCookie.toString())
+                .body(messageDto);
+    }
+
     @GetMapping("/logout")
     protected ResponseEntity<@NonNull ApiMessageDto> logout(@CookieValue("access-token") String accessToken){
+        jwtUtil.validateAccessToken(accessToken).ifPresent(sessionService::revokeAccessTokens);
         ApiMessageDto messageDto = sessionService.deleteSession(accessToken);
         ResponseCookie accessCookie = ResponseCookie.from("access-token", "")
                 .httpOnly(true)
@@ -0,0 +1,60 @@
+package com.lostedin.authenticator.auth_service.controller;
+
+import com.lostedin.authenticator.auth_service.model.token.SigningKeyStore;
+import com.lostedin.authenticator.user_service.model.token.JwkCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Public signing keys for resource servers that validate access tokens locally. Empty in HS mode: the shared
+ * secret is never published.
+ */
+@RestController
+public class JwksController {
+
+    private final SigningKeyStore keyStore;
+    private final CacheControl cacheControl;
+
+    public JwksController(
+            SigningKeyStore keyStore,
+            @Value("${jwt.jwks.max-age-seconds:300}") long maxAgeSeconds
+    ) {
+        this.keyStore = keyStore;
+        this.cacheControl = CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds)).cachePublic();
+    }
+
+    @GetMapping("/.well-known/jwks.json")
+    protected ResponseEntity<JwkCodec.JwkSet> jwks(WebRequest request) {
+        JwkCodec.JwkSet keys = keyStore.publishedKeys();
+        String etag = etag(keys);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).eTag(etag).build();
+        }
+        return ResponseEntity.ok().cacheControl(cacheControl).eTag(etag).body(keys);
+    }
+
+    // Changes exactly when a key is published or withdrawn
+    private static String etag(JwkCodec.JwkSet keys) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (JwkCodec.Jwk jwk : keys.keys()) {
+                digest.update((jwk.kid() + ':' + jwk.x() + ':' + jwk.y() + ';').getBytes(StandardCharsets.UTF_8));
+            }
+            return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest.digest(), 16)) + '"';
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
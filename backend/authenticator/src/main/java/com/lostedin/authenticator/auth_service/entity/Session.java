@@ -3,8 +3,14 @@ package com.lostedin.authenticator.auth_service.entity;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.time.Instant;
 import java.util.UUID;
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_session_user_id", columnList = "user_id"),
+        // keyset order for the expired-session purge
+        @Index(name = "idx_session_expires_at", columnList = "expires_at, id")
+})
 @Getter
 @Setter
 @Builder
@@ -14,9 +20,12 @@ public class Session {
 
     @Id
     private UUID id;
-    @Column(nullable = false)
+    @Column(name = "user_id", nullable = false)
     private UUID userId;
     @Column(nullable = false)
     private String refresh_token;
+    // Expiry of the refresh token; rows past it are removed by SessionPurgeJob
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
 
 }
@@ -1,14 +1,24 @@
 package com.lostedin.authenticator.auth_service.model.token;
 
+import com.lostedin.authenticator.user_service.model.token.TokenValidator;
+import com.lostedin.authenticator.user_service.model.token.VerifiedTokenCache;
+import com.lostedin.authenticator.user_service.repo.TokenEpochStore;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Date;
@@ -19,13 +29,22 @@ import java.util.UUID;
 public class JwtUtil {
 
     private final SecretKey key;
+    private final SigningKeyStore keyStore;
+    private final JwtParser parser;
+    private final VerifiedTokenCache accessTokenCache; // null when disabled
+    private final TokenEpochStore epochs; // null skips the revocation check (benchmarks)
     private final Duration accessTtl;
     private final Duration refreshTtl;
 
     public JwtUtil(
             @Value("${jwt.secret}") String secret,
             @Value("${jwt.access-ttl-seconds:900}") long accessTtlSeconds,         // default 15 minutes
-            @Value("${jwt.refresh-ttl-seconds:1209600}") long refreshTtlSeconds    // default 14 days
+            @Value("${jwt.refresh-ttl-seconds:1209600}") long refreshTtlSeconds,   // default 14 days
+            @Value("${jwt.validation-cache.enabled:true}") boolean cacheEnabled,
+            @Value("${jwt.validation-cache.maximum-size:100000}") long cacheMaximumSize,
+            MeterRegistry meterRegistry,
+            SigningKeyStore keyStore,
+            TokenEpochStore epochs
     ) {
         SecretKey tmp;
         try {
@@ -36,43 +55,96 @@ public class JwtUtil {
             tmp = Keys.hmacShaKeyFor(bytes);
         }
         this.key = tmp;
+        this.keyStore = keyStore;
+        this.epochs = epochs;
+        // JwtParser is immutable and thread-safe, so one instance serves every request
+        this.parser = keyStore.algorithm().isAsymmetric()
+                ? Jwts.parser().keyLocator(new LocatorAdapter<Key>() {
+                    @Override
+                    protected Key locate(JwsHeader header) {
+                        return keyStore.verificationKey(header.getKeyId());
+                    }
+                }).build()
+                : Jwts.parser().verifyWith(key).build();
+        // Only access tokens are cached: refresh tokens are single-use, a cache entry would never be hit
+        this.accessTokenCache = cacheEnabled ? new VerifiedTokenCache(cacheMaximumSize, meterRegistry, "access-tokens.auth-service") : null;
         this.accessTtl = Duration.ofSeconds(accessTtlSeconds);
         this.refreshTtl = Duration.ofSeconds(refreshTtlSeconds);
     }
 
     public String generateAccessToken(UUID userId) {
-        return buildToken(userId.toString(), accessTtl);
+        return buildToken(userId.toString(), accessTtl, null, null);
     }
 
+    // Refresh tokens carry a random jti so rotating a session within the same second still yields a new token,
+    // and a typ header so resource servers trusting the same keys do not take them for access tokens
     public String generateRefreshToken(UUID sessionId) {
-        return buildToken(sessionId.toString(), refreshTtl);
+        return buildToken(sessionId.toString(), refreshTtl, UUID.randomUUID().toString(), TokenValidator.REFRESH_TOKEN_TYPE);
+    }
+
+    public Duration getRefreshTtl() {
+        return refreshTtl;
     }
 
     public Optional<UUID> validateAccessToken(String token) {
-        return parseAndValidate(token);
+        if (token == null) return Optional.empty();
+        if (accessTokenCache != null) {
+            VerifiedTokenCache.Entry cached = accessTokenCache.get(token);
+            if (cached != null) return accept(cached.subject(), cached.issuedAt());
+        }
+        return parseAndValidate(token, accessTokenCache, true);
     }
 
     public Optional<UUID> validateRefreshToken(String token) {
-        return parseAndValidate(token);
+        return parseAndValidate(token, null, false);
     }
 
-    private String buildToken(String subject, Duration ttl) {
+    private String buildToken(String subject, Duration ttl, String tokenId, String type) {
         Instant now = Instant.now();
         Instant exp = now.plus(ttl);
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
+                .id(tokenId) // omitted when null
                 .subject(subject)
                 .issuedAt(Date.from(now))
-                .expiration(Date.from(exp))
-                .signWith(key) // algorithm derived from key (HS256 for HMAC-SHA-256 key length)
-                .compact();
+                .expiration(Date.from(exp));
+        if (type != null) builder.header().type(type);
+        return sign(builder).compact();
+    }
+
+    private JwtBuilder sign(JwtBuilder builder) {
+        return switch (keyStore.algorithm()) {
+            case HS -> builder.signWith(key); // algorithm derived from key length (HS384 for the 424-bit dev secret)
+            case EdDSA -> {
+                SigningKeyStore.SigningKey signingKey = keyStore.signingKey();
+                yield builder.header().keyId(signingKey.kid()).and().signWith(signingKey.privateKey(), Jwts.SIG.EdDSA);
+            }
+            case ES256 -> {
+                SigningKeyStore.SigningKey signingKey = keyStore.signingKey();
+                yield builder.header().keyId(signingKey.kid()).and().signWith(signingKey.privateKey(), Jwts.SIG.ES256);
+            }
+        };
+    }
+
+    // Revocation epochs are per user, so they only apply to access tokens (refresh tokens carry a session id)
+    private Optional<UUID> accept(UUID subject, long issuedAt) {
+        if (epochs != null && epochs.isRevoked(subject, issuedAt)) return Optional.empty();
+        return Optional.of(subject);
     }
 
-    private Optional<UUID> parseAndValidate(String token) {
+    private Optional<UUID> parseAndValidate(String token, VerifiedTokenCache cache, boolean accessToken) {
         try {
-            Claims claims = Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload();
+            Jws<Claims> jws = parser.parseSignedClaims(token);
+            // Refresh tokens issued before they carried a typ are still accepted as refresh tokens
+            if (accessToken && TokenValidator.REFRESH_TOKEN_TYPE.equals(jws.getHeader().getType())) return Optional.empty();
+            Claims claims = jws.getPayload();
             String sub = claims.getSubject();
             if (sub == null) return Optional.empty();
-            return Optional.of(UUID.fromString(sub));
+            UUID subject = UUID.fromString(sub);
+            long issuedAt = claims.getIssuedAt() == null ? 0 : claims.getIssuedAt().getTime() / 1000L;
+            if (cache != null && claims.getExpiration() != null) {
+                cache.put(token, new VerifiedTokenCache.Entry(subject, issuedAt, claims.getExpiration().getTime() / 1000L));
+            }
+            return accessToken ? accept(subject, issuedAt) : Optional.of(subject);
         } catch (Exception e) {
             return Optional.empty();
         }
@@ -0,0 +1,148 @@
+package com.lostedin.authenticator.auth_service.model.token;
+
+import com.lostedin.authenticator.auth_service.config.SigningProperties;
+import com.lostedin.authenticator.user_service.model.token.JwkCodec;
+import com.lostedin.authenticator.user_service.model.token.SigningAlgorithm;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Key ring for the asymmetric signing modes. Picks the signing key for "now", resolves verification keys by
+ * {@code kid}, and builds the JWK set served at {@code /.well-known/jwks.json}. Unused in HS mode.
+ */
+@Slf4j
+@Component
+public class SigningKeyStore {
+
+    public record SigningKey(String kid, PrivateKey privateKey, PublicKey publicKey, Instant notBefore, Instant notAfter) {
+
+        boolean canSign(Instant now) {
+            return privateKey != null
+                    && (notBefore == null || !now.isBefore(notBefore))
+                    && (notAfter == null || now.isBefore(notAfter));
+        }
+
+        // Retired keys stay valid for verification until every token they signed has expired
+        boolean canVerify(Instant now, Duration maxTokenTtl) {
+            return notAfter == null || now.isBefore(notAfter.plus(maxTokenTtl));
+        }
+    }
+
+    private final SigningAlgorithm algorithm;
+    private final Map<String, SigningKey> keys; // by kid
+    private final Duration accessTtl;
+    private final Duration refreshTtl;
+
+    public SigningKeyStore(
+            SigningProperties properties,
+            @Value("${jwt.access-ttl-seconds:900}") long accessTtlSeconds,
+            @Value("${jwt.refresh-ttl-seconds:1209600}") long refreshTtlSeconds
+    ) {
+        this.algorithm = SigningAlgorithm.fromProperty(properties.getAlgorithm());
+        this.accessTtl = Duration.ofSeconds(accessTtlSeconds);
+        this.refreshTtl = Duration.ofSeconds(refreshTtlSeconds);
+        this.keys = algorithm.isAsymmetric() ? load(properties.getKeys()) : Map.of();
+        if (algorithm.isAsymmetric()) signingKey(); // fail at startup rather than on the first login
+    }
+
+    public SigningAlgorithm algorithm() {
+        return algorithm;
+    }
+
+    /** The active key with the latest not-before */
+    public SigningKey signingKey() {
+        Instant now = Instant.now();
+        SigningKey best = null;
+        for (SigningKey key : keys.values()) {
+            if (!key.canSign(now)) continue;
+            if (best == null || notBefore(key).isAfter(notBefore(best))) best = key;
+        }
+        if (best == null) throw new IllegalStateException("No " + algorithm + " signing key is active at " + now);
+        return best;
+    }
+
+    /** Key for verifying a token this service issued (access or refresh), or null */
+    public PublicKey verificationKey(String kid) {
+        if (kid == null) return null;
+        SigningKey key = keys.get(kid);
+        return key != null && key.canVerify(Instant.now(), refreshTtl) ? key.publicKey() : null;
+    }
+
+    /**
+     * Keys resource servers may meet: upcoming ones (so they are cached before first use), the active one, and
+     * retired ones until their last access token expires. Refresh tokens are signed with the same keys, so a
+     * resource server can verify them too; they carry {@code typ: refresh+jwt}, which it has to reject
+     * (see {@code TokenValidator.REFRESH_TOKEN_TYPE}).
+     */
+    public JwkCodec.JwkSet publishedKeys() {
+        Instant now = Instant.now();
+        List<JwkCodec.Jwk> published = new ArrayList<>();
+        for (SigningKey key : keys.values()) {
+            if (key.canVerify(now, accessTtl)) published.add(JwkCodec.toJwk(key.kid(), algorithm, key.publicKey()));
+        }
+        return new JwkCodec.JwkSet(published);
+    }
+
+    private Map<String, SigningKey> load(List<SigningProperties.Key> configured) {
+        Map<String, SigningKey> loaded = new LinkedHashMap<>();
+        if (configured.isEmpty()) {
+            SigningKey ephemeral = generate();
+            log.warn("No jwt.signing.keys configured, generated ephemeral {} key {}; tokens will not survive a restart",
+                    algorithm, ephemeral.kid());
+            loaded.put(ephemeral.kid(), ephemeral);
+            return loaded;
+        }
+        try {
+            KeyFactory factory = KeyFactory.getInstance(algorithm.keyAlgorithm());
+            for (SigningProperties.Key key : configured) {
+                if (key.getKid() == null || key.getPublicKey() == null)
+                    throw new IllegalStateException("jwt.signing.keys entries need kid and public-key");
+                PublicKey publicKey = factory.generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(key.getPublicKey())));
+                PrivateKey privateKey = key.getPrivateKey() == null ? null
+                        : factory.generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(key.getPrivateKey())));
+                if (loaded.put(key.getKid(), new SigningKey(key.getKid(), privateKey, publicKey, key.getNotBefore(), key.getNotAfter())) != null)
+                    throw new IllegalStateException("Duplicate kid in jwt.signing.keys: " + key.getKid());
+            }
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid jwt.signing.keys for " + algorithm, e);
+        }
+        return loaded;
+    }
+
+    private SigningKey generate() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance(algorithm.keyAlgorithm());
+            if (algorithm == SigningAlgorithm.ES256) generator.initialize(new ECGenParameterSpec("secp256r1"));
+            KeyPair pair = generator.generateKeyPair();
+            return new SigningKey(thumbprintKid(pair.getPublic()), pair.getPrivate(), pair.getPublic(), null, null);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(algorithm + " key generation failed", e);
+        }
+    }
+
+    // Short, stable id derived from the public key, so restarts with the same key keep the same kid
+    private static String thumbprintKid(PublicKey key) throws GeneralSecurityException {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getEncoded());
+        return new String(Base64.getUrlEncoder().withoutPadding().encode(Arrays.copyOf(digest, 12)), StandardCharsets.US_ASCII);
+    }
+
+    private static Instant notBefore(SigningKey key) {
+        return key.notBefore() == null ? Instant.EPOCH : key.notBefore();
+    }
+}
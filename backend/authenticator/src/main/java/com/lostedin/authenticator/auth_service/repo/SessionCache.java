@@ -0,0 +1,112 @@
+package com.lostedin.authenticator.auth_service.repo;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lostedin.authenticator.auth_service.entity.Session;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Write-through cache of sessions by id in front of {@link SessionRepo}.
+ * <p>
+ * Size-bounded Caffeine cache (W-TinyLFU eviction) whose entries expire after {@code jwt.refresh-ttl-seconds},
+ * i.e. no later than the refresh token they belong to. With {@code session.cache.enabled=false} every call
+ * goes straight to the repository. Hit/miss/eviction counters are exported as {@code cache.*{cache=sessions}}.
+ */
+@Slf4j
+@Component
+public class SessionCache {
+
+    private final SessionRepo sessionRepo;
+    private final Cache<UUID, Session> cache;
+
+    public SessionCache(
+            SessionRepo sessionRepo,
+            MeterRegistry meterRegistry,
+            @Value("${session.cache.enabled:true}") boolean enabled,
+            @Value("${session.cache.maximum-size:100000}") long maximumSize,
+            @Value("${jwt.refresh-ttl-seconds:1209600}") long refreshTtlSeconds
+    ) {
+        this.sessionRepo = sessionRepo;
+        if (enabled) {
+            this.cache = Caffeine.newBuilder()
+                    .maximumSize(maximumSize)
+                    .expireAfterWrite(Duration.ofSeconds(refreshTtlSeconds))
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "sessions");
+        } else {
+            this.cache = null;
+            log.info("Session cache disabled");
+        }
+    }
+
+    public Optional<Session> findById(UUID id) {
+        if (cache == null) return sessionRepo.findById(id);
+        Session cached = cache.getIfPresent(id);
+        if (cached != null) return Optional.of(cached);
+        Optional<Session> loaded = sessionRepo.findById(id);
+        loaded.ifPresent(session -> cache.put(id, session));
+        return loaded;
+    }
+
+    public boolean existsById(UUID id) {
+        if (cache != null && cache.getIfPresent(id) != null) return true;
+        return sessionRepo.existsById(id);
+    }
+
+    public Session save(Session session) {
+        Session saved = sessionRepo.save(session);
+        if (cache != null) cache.put(saved.getId(), saved);
+        return saved;
+    }
+
+    /**
+     * Rotates the refresh token hash in one conditional statement (see {@link SessionRepo#rotate}).
+     * On success the cached entry is replaced; otherwise it is dropped, since it is stale or already gone.
+     * @return the session's user id if exactly one row was rotated
+     */
+    public Optional<UUID> rotate(UUID id, String oldHash, String newHash, Instant expiresAt) {
+        List<UUID> rotated = sessionRepo.rotate(id, oldHash, newHash, expiresAt, Instant.now());
+        if (rotated.size() != 1) {
+            if (cache != null) cache.invalidate(id);
+            return Optional.empty();
+        }
+        UUID userId = rotated.getFirst();
+        if (cache != null) {
+            cache.put(id, Session.builder()
+                    .id(id)
+                    .userId(userId)
+                    .refresh_token(newHash)
+                    .expiresAt(expiresAt)
+                    .build());
+        }
+        return Optional.of(userId);
+    }
+
+    public void deleteById(UUID id) {
+        // Evict first so a failed delete can't leave a cached session behind
+        if (cache != null) cache.invalidate(id);
+        sessionRepo.deleteById(id);
+    }
+
+    /**
+     * Deletes all sessions of a user with one statement (see {@link SessionRepo#deleteAllByUserId}).
+     * @return number of sessions deleted
+     */
+    public int deleteAllByUserId(UUID userId) {
+        List<UUID> deleted = sessionRepo.deleteAllByUserId(userId);
+        if (cache != null) cache.invalidateAll(deleted);
+        return deleted.size();
+    }
+
+}
@@ -1,13 +1,73 @@
 package com.lostedin.authenticator.auth_service.repo;
 
 import com.lostedin.authenticator.auth_service.entity.Session;
+import jakarta.persistence.QueryHint;
 import lombok.NonNull;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface SessionRepo extends JpaRepository<@NonNull Session, @NonNull UUID> {
 
+    /**
+     * Compare-and-set rotation of a session's refresh token: replaces the stored hash only where both the id
+     * and the current hash match and the session has not expired.
+     * @return the session's user id if exactly this row was rotated, otherwise an empty list
+     */
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "session"))
+    @Query(value = """
+            UPDATE session SET refresh_token = :newHash, expires_at = :expiresAt
+            WHERE id = :id AND refresh_token = :oldHash AND expires_at > :now
+            RETURNING user_id
+            """, nativeQuery = true)
+    List<UUID> rotate(
+            @Param("id") UUID id,
+            @Param("oldHash") String oldHash,
+            @Param("newHash") String newHash,
+            @Param("expiresAt") Instant expiresAt,
+            @Param("now") Instant now
+    );
+
+    /**
+     * Deletes every session of a user in one statement, through {@code idx_session_user_id}.
+     * @return ids of the deleted sessions, so cached copies can be evicted
+     */
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "session"))
+    @Query(value = "DELETE FROM session WHERE user_id = :userId RETURNING id", nativeQuery = true)
+    List<UUID> deleteAllByUserId(@Param("userId") UUID userId);
+
+    /**
+     * Deletes up to {@code batchSize} sessions that expired before {@code now}, oldest first in
+     * (expires_at, id) index order. Rows locked by a concurrent refresh are skipped rather than waited on,
+     * and each batch is its own short transaction. The query space limits Hibernate's bulk-DML cleanup to the
+     * session table; without it every run would clear the whole second-level cache.
+     * @return number of rows deleted
+     */
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "session"))
+    @Query(value = """
+            WITH batch AS (
+                SELECT id FROM session
+                WHERE expires_at < :now
+                ORDER BY expires_at, id
+                LIMIT :batchSize
+                FOR UPDATE SKIP LOCKED
+            )
+            DELETE FROM session s USING batch WHERE s.id = batch.id
+            """, nativeQuery = true)
+    int deleteExpiredBatch(@Param("now") Instant now, @Param("batchSize") int batchSize);
+
 }
@@ -1,12 +1,13 @@
 package com.lostedin.authenticator.auth_service.service;
 
 import com.lostedin.authenticator.auth_service.api.UserAPI;
-import com.lostedin.authenticator.auth_service.dto.ApiMessageDto;
 import com.lostedin.authenticator.auth_service.dto.AuthDto;
 import com.lostedin.authenticator.auth_service.dto.UserIdWithResponseDto;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 @Service
 @RequiredArgsConstructor
 public class AuthorizationService {
@@ -14,12 +15,17 @@ public class AuthorizationService {
     private final UserAPI userAPI;
     private final SessionService sessionService;
 
-    public UserIdWithResponseDto authorizeUser(AuthDto user){
-        return userAPI.validate(user.getUsername(), user.getPassword());
+    /**
+     * The user service counts the attempt against the login throttle; the future fails with
+     * {@link com.lostedin.authenticator.user_service.exception.LoginThrottledException} before any password
+     * hashing if the username or client IP is over its login rate.
+     */
+    public CompletableFuture<UserIdWithResponseDto> authorizeUser(AuthDto user, String clientIp){
+        return userAPI.validateAsync(user.getUsername(), user.getPassword(), clientIp);
     }
 
-    public ApiMessageDto registerUser(AuthDto authDto){
-        return userAPI.createUser(authDto.getUsername(), authDto.getPassword());
+    public CompletableFuture<UserIdWithResponseDto> registerUser(AuthDto authDto){
+        return userAPI.createUserAsync(authDto.getUsername(), authDto.getPassword());
     }
 
 
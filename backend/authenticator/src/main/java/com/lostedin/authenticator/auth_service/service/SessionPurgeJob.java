@@ -0,0 +1,64 @@
+package com.lostedin.authenticator.auth_service.service;
+
+import com.lostedin.authenticator.auth_service.repo.SessionRepo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Periodically removes sessions whose refresh token has expired, in small batches so no run holds long locks.
+ * Rows removed per run are logged and counted in {@code session.purge.deleted}.
+ */
+@Slf4j
+@Component
+public class SessionPurgeJob {
+
+    private final SessionRepo sessionRepo;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Counter deletedCounter;
+
+    public SessionPurgeJob(
+            SessionRepo sessionRepo,
+            MeterRegistry meterRegistry,
+            @Value("${session.purge.enabled:true}") boolean enabled,
+            @Value("${session.purge.batch-size:1000}") int batchSize,
+            @Value("${session.purge.max-batches-per-run:100}") int maxBatchesPerRun
+    ) {
+        this.sessionRepo = sessionRepo;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.deletedCounter = Counter.builder("session.purge.deleted")
+                .description("Expired sessions removed by the purge job")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${session.purge.interval-ms:300000}", fixedDelayString = "${session.purge.interval-ms:300000}")
+    public void purgeExpiredSessions() {
+        if (!enabled) return;
+        Instant now = Instant.now();
+        long startedAt = System.nanoTime();
+        int total = 0;
+        int batches = 0;
+        try {
+            while (batches < maxBatchesPerRun) {
+                int deleted = sessionRepo.deleteExpiredBatch(now, batchSize);
+                total += deleted;
+                batches++;
+                if (deleted < batchSize) break;
+            }
+        } catch (RuntimeException e) {
+            log.error("Session purge failed after {} batches", batches, e);
+        }
+        deletedCounter.increment(total);
+        log.info("Session purge removed {} expired sessions in {} batches ({} ms)",
+                total, batches, (System.nanoTime() - startedAt) / 1_000_000);
+    }
+}
@@ -0,0 +1,21 @@
+package com.lostedin.authenticator.auth_service.service;
+
+import com.lostedin.authenticator.user_service.event.PasswordChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Signs a user out everywhere once their password has changed, so a stolen refresh token stops working.
+ */
+@Component
+@RequiredArgsConstructor
+public class SessionRevocationListener {
+
+    private final SessionService sessionService;
+
+    @EventListener
+    public void onPasswordChanged(PasswordChangedEvent event) {
+        sessionService.revokeAllSessions(event.userId());
+    }
+}
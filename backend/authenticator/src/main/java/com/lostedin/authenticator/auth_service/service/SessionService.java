@@ -4,13 +4,15 @@ import com.lostedin.authenticator.auth_service.dto.ApiMessageDto;
 import com.lostedin.authenticator.auth_service.dto.TokenDto;
 import com.lostedin.authenticator.auth_service.entity.Session;
 import com.lostedin.authenticator.auth_service.model.token.JwtUtil;
-import com.lostedin.authenticator.auth_service.repo.SessionRepo;
-import com.lostedin.authenticator.auth_service.util.Hasher;
+import com.lostedin.authenticator.auth_service.repo.SessionCache;
 import com.lostedin.authenticator.auth_service.util.Helper;
+import com.lostedin.authenticator.auth_service.util.RefreshTokenHasher;
+import com.lostedin.authenticator.user_service.repo.TokenEpochStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -19,24 +21,27 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class SessionService {
 
-    private final SessionRepo sessionRepo;
+    private final SessionCache sessionCache; // write-through, consulted before SessionRepo
     private final JwtUtil jwtUtil;
+    private final RefreshTokenHasher refreshTokenHasher;
+    private final TokenEpochStore tokenEpochStore;
 
     public TokenDto createSession(UUID userId){
         log.info("Starting create session for user: {}", userId);
         UUID sessionId = Helper.generateRandomUUID();
-        if (sessionRepo.existsById(sessionId)) return createSession(userId);
+        if (sessionCache.existsById(sessionId)) return createSession(userId);
         String accessToken = jwtUtil.generateAccessToken(userId);
         String refreshToken = jwtUtil.generateRefreshToken(sessionId);
-        String hasedRefreshToken = Hasher.bcrypt(refreshToken);
+        String hasedRefreshToken = refreshTokenHasher.hash(refreshToken);
 
         Session session = Session.builder()
                 .id(sessionId)
                 .userId(userId)
                 .refresh_token(hasedRefreshToken)
+                .expiresAt(Instant.now().plus(jwtUtil.getRefreshTtl()))
                 .build();
         try {
-            sessionRepo.save(session);
+            sessionCache.save(session);
         }catch (RuntimeException e){
             log.error("Failed to save session", e);
             return TokenDto.builder().status(500).message("Internal server error").build();
@@ -49,6 +54,12 @@ public class SessionService {
                 .build();
     }
 
+    /**
+     * Rotates the session's refresh token with a single conditional UPDATE keyed on the id and the old token's
+     * hash. Only one of several concurrent refreshes with the same token can win; the others see 401.
+     * In hmac mode the old hash is computed rather than read; stored hashes in another format (legacy bcrypt)
+     * are read back, verified, and swapped in the same compare-and-set, which also upgrades their format.
+     */
     public TokenDto refreshSession(String refreshToken){
         log.info("Refreshing session for refresh token: {}", refreshToken);
 
@@ -56,27 +67,64 @@ public class SessionService {
         if(optionalSessionId.isEmpty())
             return TokenDto.builder().status(401).message("Unauthorized").build();
         UUID sessionId = optionalSessionId.get();
-        Optional<Session> optionalSession = sessionRepo.findById(sessionId);
-        if(optionalSession.isEmpty())
-            return TokenDto.builder().status(401).message("Unauthorized").build();
 
-        Session session = optionalSession.get();
-        if(!Hasher.verify(refreshToken, session.getRefresh_token()))
+        String newRefreshToken = jwtUtil.generateRefreshToken(sessionId);
+        String newHash = refreshTokenHasher.hash(newRefreshToken);
+        Instant expiresAt = Instant.now().plus(jwtUtil.getRefreshTtl());
+
+        Optional<UUID> userId = Optional.empty();
+        if (refreshTokenHasher.isDeterministic())
+            userId = sessionCache.rotate(sessionId, refreshTokenHasher.hash(refreshToken), newHash, expiresAt);
+        if (userId.isEmpty()) {
+            // Not matched by the computed hash: either the token is stale or the row holds a non-deterministic hash
+            Optional<Session> optionalSession = sessionCache.findById(sessionId);
+            if(optionalSession.isEmpty())
+                return TokenDto.builder().status(401).message("Unauthorized").build();
+            String storedHash = optionalSession.get().getRefresh_token();
+            boolean readBack = !refreshTokenHasher.isDeterministic() || refreshTokenHasher.needsUpgrade(storedHash);
+            if(!readBack || !refreshTokenHasher.verify(refreshToken, storedHash))
+                return TokenDto.builder().status(401).message("Unauthorized").build();
+            userId = sessionCache.rotate(sessionId, storedHash, newHash, expiresAt);
+        }
+        if(userId.isEmpty())
             return TokenDto.builder().status(401).message("Unauthorized").build();
-        sessionRepo.deleteById(sessionId);
-        return createSession(session.getUserId());
+
+        return TokenDto.builder()
+                .access_token(jwtUtil.generateAccessToken(userId.get()))
+                .refresh_token(newRefreshToken)
+                .status(201)
+                .message("Session refreshed")
+                .build();
     }
 
 
+    /**
+     * Ends every session of the user, e.g. after a password change or when the account is compromised.
+     * Refresh tokens and the access tokens already issued stop working immediately.
+     */
+    public ApiMessageDto revokeAllSessions(UUID userId){
+        int revoked = sessionCache.deleteAllByUserId(userId);
+        tokenEpochStore.revoke(userId);
+        log.info("Revoked {} sessions of user {}", revoked, userId);
+        return ApiMessageDto.builder().status(200).message("Revoked " + revoked + " sessions").build();
+    }
+
+    /**
+     * Rejects the access tokens the user holds now; sessions that still have a refresh token can get new ones.
+     */
+    public void revokeAccessTokens(UUID userId){
+        tokenEpochStore.revoke(userId);
+    }
+
     public ApiMessageDto deleteSession(String refreshToken){
         log.info("Deleting session for refresh token: {}", refreshToken);
         Optional<UUID> optionalSessionId = jwtUtil.validateRefreshToken(refreshToken);
         if(optionalSessionId.isEmpty())
             return ApiMessageDto.builder().status(401).message("Unauthorized").build();
         UUID sessionId = optionalSessionId.get();
-        if(!sessionRepo.existsById(sessionId))
+        if(!sessionCache.existsById(sessionId))
             return ApiMessageDto.builder().status(404).message("Session not found").build();
-        sessionRepo.deleteById(sessionId);
+        sessionCache.deleteById(sessionId);
         return ApiMessageDto.builder().status(200).message("Session deleted").build();
     }
 
@@ -0,0 +1,105 @@
+package com.lostedin.authenticator.auth_service.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Hashes refresh tokens for storage in the session table.
+ * <p>
+ * Refresh tokens are signed high-entropy JWTs, so a slow KDF buys nothing; the default {@code hmac} mode stores
+ * {@code hmac256$<pepper-version>$<base64url(HMAC-SHA-256(pepper, token))>}. The {@code bcrypt} mode keeps
+ * the old behaviour. Stored bcrypt hashes always verify, and because every refresh rotates the session,
+ * each one is rewritten in the configured format on its next rotation.
+ */
+@Component
+public class RefreshTokenHasher {
+
+    static final String HMAC_PREFIX = "hmac256$";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final boolean useHmac;
+    private final int pepperVersion;
+    private final String currentPrefix;
+    private final SecretKeySpec pepper;
+    private final ThreadLocal<Mac> mac;
+
+    public RefreshTokenHasher(
+            @Value("${session.refresh-token.hashing:hmac}") String mode,            // hmac | bcrypt
+            @Value("${session.refresh-token.pepper}") String pepper,
+            @Value("${session.refresh-token.pepper-version:1}") int pepperVersion
+    ) {
+        if (!"hmac".equals(mode) && !"bcrypt".equals(mode))
+            throw new IllegalArgumentException("session.refresh-token.hashing must be hmac or bcrypt, was " + mode);
+        this.useHmac = "hmac".equals(mode);
+        this.pepperVersion = pepperVersion;
+        this.currentPrefix = HMAC_PREFIX + pepperVersion + "$";
+
+        byte[] pepperBytes;
+        try {
+            pepperBytes = Base64.getDecoder().decode(pepper);
+        } catch (IllegalArgumentException e) {
+            pepperBytes = pepper.getBytes(StandardCharsets.UTF_8);
+        }
+        if (pepperBytes.length < 32)
+            throw new IllegalArgumentException("session.refresh-token.pepper must be at least 256 bits");
+        this.pepper = new SecretKeySpec(pepperBytes, HMAC_ALGORITHM);
+        this.mac = ThreadLocal.withInitial(this::newMac);
+    }
+
+    public String hash(String refreshToken) {
+        if (refreshToken == null) throw new IllegalArgumentException("refreshToken cannot be null");
+        if (!useHmac) return Hasher.bcrypt(refreshToken);
+        return currentPrefix + Base64.getUrlEncoder().withoutPadding().encodeToString(hmac(refreshToken));
+    }
+
+    public boolean verify(String refreshToken, String stored) {
+        if (refreshToken == null || stored == null) return false;
+        if (!stored.startsWith(HMAC_PREFIX)) return Hasher.verify(refreshToken, stored); // legacy bcrypt
+        // A different pepper version means the pepper was rotated; such sessions can no longer be verified
+        if (!stored.startsWith(currentPrefix)) return false;
+        byte[] expected;
+        try {
+            expected = Base64.getUrlDecoder().decode(stored.substring(currentPrefix.length()));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected, hmac(refreshToken));
+    }
+
+    /**
+     * True if {@link #hash} always gives the same output for the same token (hmac mode), so a stored hash
+     * can be matched by equality in SQL instead of being read back and verified.
+     */
+    public boolean isDeterministic() {
+        return useHmac;
+    }
+
+    /**
+     * True if the stored hash is not in the configured format and should be rewritten on the next rotation.
+     */
+    public boolean needsUpgrade(String stored) {
+        if (stored == null) return true;
+        return useHmac ? !stored.startsWith(currentPrefix) : stored.startsWith(HMAC_PREFIX);
+    }
+
+    private byte[] hmac(String refreshToken) {
+        return mac.get().doFinal(refreshToken.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac instance = Mac.getInstance(HMAC_ALGORITHM);
+            instance.init(pepper);
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA-256 not available", e);
+        }
+    }
+}
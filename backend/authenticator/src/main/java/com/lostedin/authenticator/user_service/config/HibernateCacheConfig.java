@@ -0,0 +1,85 @@
+package com.lostedin.authenticator.user_service.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.TimestampsRegion;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.hibernate.autoconfigure.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regions of the Hibernate second-level cache: in-process Caffeine caches behind JCache, created here with
+ * bounded sizes and TTLs and handed to Hibernate, which fails at startup if it asks for any other region.
+ * <p>
+ * Entity regions use READ_WRITE, so updates through Hibernate (including {@code saveAndFlush}) replace the
+ * cached entry on commit and bump the table's update timestamp, which invalidates cached query results on that
+ * table. Native SQL that writes these tables has to evict {@link #USER_VIEWS} itself. Hit/miss/put counters
+ * are exported as {@code cache.*{cache=<region>}}.
+ * <p>
+ * Bulk DML is the trap: after an {@code executeUpdate} Hibernate evicts every entity region of the tables the
+ * statement touches, and a native one without declared query spaces counts as touching all of them. So:
+ * <ul>
+ *   <li>native {@code @Modifying} queries declare their tables with {@code HibernateHints.HINT_NATIVE_SPACES}
+ *   ({@code SessionRepo.deleteExpiredBatch}, {@code TokenEpochRepo.raise});</li>
+ *   <li>JPQL bulk updates or deletes on a cached entity are not used; per-row changes go through the entity
+ *   ({@code UserCredentialsRepo.updatePasswordIfUnchanged});</li>
+ *   <li>native DML run as a query ({@code ... RETURNING}, no {@code @Modifying}) triggers no cleanup, which is
+ *   why {@code UserRepo.insertIfUsernameFree} and the JDBC user import evict {@link #USER_VIEWS} by hand.</li>
+ * </ul>
+ */
+@Configuration
+public class HibernateCacheConfig {
+
+    public static final String USERS = "users";
+    public static final String USER_CREDENTIALS = "user-credentials";
+    /** Cached results of the {@code UserRepo.find*View} projection queries */
+    public static final String USER_VIEWS = "user-views";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(
+            MeterRegistry meterRegistry,
+            @Value("${hibernate-cache.entities.maximum-size:100000}") long entityMaximumSize,
+            @Value("${hibernate-cache.entities.ttl-seconds:600}") long entityTtlSeconds,
+            @Value("${hibernate-cache.queries.maximum-size:100000}") long queryMaximumSize,
+            @Value("${hibernate-cache.queries.ttl-seconds:300}") long queryTtlSeconds
+    ) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), getClass().getClassLoader());
+        create(cacheManager, meterRegistry, USERS, entityMaximumSize, entityTtlSeconds);
+        create(cacheManager, meterRegistry, USER_CREDENTIALS, entityMaximumSize, entityTtlSeconds);
+        create(cacheManager, meterRegistry, USER_VIEWS, queryMaximumSize, queryTtlSeconds);
+        create(cacheManager, meterRegistry, QueryResultsRegion.DEFAULT_QUERY_RESULTS_REGION_NAME, queryMaximumSize, queryTtlSeconds);
+        // one entry per table; must outlive every cached query result or stale results could be served
+        create(cacheManager, meterRegistry, TimestampsRegion.DEFAULT_UPDATE_TIMESTAMPS_REGION_NAME, 10_000, 0);
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    private static void create(CacheManager cacheManager, MeterRegistry meterRegistry, String name,
+                               long maximumSize, long ttlSeconds) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        if (ttlSeconds > 0) configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(ttlSeconds)));
+        // Hibernate already stores disassembled, immutable state; copying it on every access is wasted work
+        configuration.setStoreByValue(false);
+        configuration.setStatisticsEnabled(true);
+        Cache<Object, Object> cache = cacheManager.createCache(name, configuration);
+        JCacheMetrics.monitor(meterRegistry, cache);
+    }
+}
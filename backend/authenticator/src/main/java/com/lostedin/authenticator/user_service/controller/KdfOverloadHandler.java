@@ -0,0 +1,25 @@
+package com.lostedin.authenticator.user_service.controller;
+
+import com.lostedin.authenticator.user_service.dto.ResponseDto;
+import com.lostedin.authenticator.user_service.exception.KdfOverloadedException;
+import lombok.NonNull;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Turns a full KDF queue into 503 + Retry-After. Global on purpose: with the in-process user transport
+ * the exception reaches the client through /auth endpoints as well.
+ */
+@RestControllerAdvice
+public class KdfOverloadHandler {
+
+    @ExceptionHandler(KdfOverloadedException.class)
+    protected ResponseEntity<@NonNull ResponseDto> handleOverload(KdfOverloadedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body(ResponseDto.builder().status(503).message(e.getMessage()).build());
+    }
+}
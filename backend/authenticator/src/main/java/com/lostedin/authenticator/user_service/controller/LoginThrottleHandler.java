@@ -0,0 +1,25 @@
+package com.lostedin.authenticator.user_service.controller;
+
+import com.lostedin.authenticator.user_service.dto.ResponseDto;
+import com.lostedin.authenticator.user_service.exception.LoginThrottledException;
+import lombok.NonNull;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Turns a throttled login into 429 + Retry-After. Global on purpose: with the in-process user transport
+ * the exception reaches the client through /auth endpoints as well.
+ */
+@RestControllerAdvice
+public class LoginThrottleHandler {
+
+    @ExceptionHandler(LoginThrottledException.class)
+    protected ResponseEntity<@NonNull ResponseDto> handleThrottled(LoginThrottledException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body(ResponseDto.builder().status(429).message(e.getMessage()).build());
+    }
+}
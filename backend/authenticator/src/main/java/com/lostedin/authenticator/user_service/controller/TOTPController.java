@@ -4,8 +4,8 @@ package com.lostedin.authenticator.user_service.controller;
 import com.lostedin.authenticator.user_service.dto.ResponseDto;
 import com.lostedin.authenticator.user_service.exception.InvalidTokenException;
 import com.lostedin.authenticator.user_service.model.token.TokenValidator;
+import com.lostedin.authenticator.user_service.service.TotpQrRenderer;
 import com.lostedin.authenticator.user_service.service.TotpService;
-import com.lostedin.authenticator.user_service.util.QrUtil;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpHeaders;
@@ -45,19 +45,21 @@ public class TOTPController {
         return ResponseEntity.status(HttpStatus.FORBIDDEN).body(ResponseDto.builder().status(401).message("Invalid code").build());
     }
 
-    @GetMapping(value = "/totp-qr", produces = MediaType.IMAGE_PNG_VALUE)
+    // format=png (default) or svg. The image holds the shared secret, so browsers and proxies must not store it
+    @GetMapping("/totp-qr")
     public ResponseEntity<byte[]> totp_qr(
+            @RequestParam(value = "format", defaultValue = "png") String format,
             @CookieValue(value = "access-token") String accessToken
     ) {
         UUID userId = getIdFromToken(accessToken);
+        TotpQrRenderer.Format qrFormat = "svg".equalsIgnoreCase(format) ? TotpQrRenderer.Format.SVG : TotpQrRenderer.Format.PNG;
 
-        String totp_uri = totpService.getTotpUri(userId);
-
-        byte[] png = QrUtil.generatePng(totp_uri, 256);
+        TotpQrRenderer.Rendered qr = totpService.getTotpQr(userId, qrFormat);
         return ResponseEntity.ok()
                 .header(HttpHeaders.CACHE_CONTROL, "no-store, no-cache, must-revalidate, max-age=0")
-                .contentType(MediaType.IMAGE_PNG)
-                .body(png);
+                .header(HttpHeaders.PRAGMA, "no-cache")
+                .contentType(MediaType.parseMediaType(qrFormat.contentType()))
+                .body(qr.body());
     }
 
     private UUID getIdFromToken(String accessToken) throws InvalidTokenException{
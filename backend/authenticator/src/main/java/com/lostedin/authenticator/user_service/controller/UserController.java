@@ -4,7 +4,9 @@ import com.lostedin.authenticator.user_service.dto.SignUpDto;
 import com.lostedin.authenticator.user_service.dto.ResponseDto;
 import com.lostedin.authenticator.user_service.dto.UserDataDto;
 import com.lostedin.authenticator.user_service.dto.UserIdDto;
+import com.lostedin.authenticator.user_service.service.LoginThrottle;
 import com.lostedin.authenticator.user_service.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -18,6 +20,7 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class UserController {
     private final UserService userService;
+    private final LoginThrottle loginThrottle;
 
     @PostMapping("/me")
     protected ResponseEntity<@NonNull ResponseDto> getUser(@RequestBody UserIdDto idDto){
@@ -27,8 +30,13 @@ public class UserController {
     }
 
     @PostMapping("/validate")
-    protected ResponseEntity<@NonNull ResponseDto> validateUser(@RequestBody SignUpDto userDto){
-        ResponseDto response = userService.validateUser(userDto.getUsername(), userDto.getPassword());
+    protected ResponseEntity<@NonNull ResponseDto> validateUser(
+            @RequestBody SignUpDto userDto,
+            @RequestHeader(value = LoginThrottle.CLIENT_IP_HEADER, required = false) String relayedClientIp,
+            HttpServletRequest request
+    ){
+        String clientIp = loginThrottle.clientIp(request.getRemoteAddr(), relayedClientIp);
+        ResponseDto response = userService.validateUser(userDto.getUsername(), userDto.getPassword(), clientIp);
         return ResponseEntity.status(response.getStatus()).body(response);
     }
 
@@ -38,6 +46,13 @@ public class UserController {
         return  ResponseEntity.status(response.getStatus()).body(response);
     }
 
+    // Cheap check for registration forms; definitely-unused names are answered without a database query
+    @GetMapping("/username-available")
+    protected ResponseEntity<@NonNull ResponseDto> usernameAvailable(@RequestParam("username") String username){
+        ResponseDto response = userService.checkUsernameAvailable(username);
+        return ResponseEntity.status(response.getStatus()).body(response);
+    }
+
 
 
 
@@ -0,0 +1,17 @@
+package com.lostedin.authenticator.user_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+@EqualsAndHashCode(callSuper = true)
+@Data
+@SuperBuilder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@NoArgsConstructor
+public class UsernameAvailabilityDto extends ResponseDto {
+    String username;
+    Boolean available;
+}
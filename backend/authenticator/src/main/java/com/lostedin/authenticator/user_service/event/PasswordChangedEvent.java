@@ -0,0 +1,10 @@
+package com.lostedin.authenticator.user_service.event;
+
+import java.util.UUID;
+
+/**
+ * Published by {@code UserSettingsService} after a user's password has been changed. The auth service revokes
+ * the user's sessions on it; the user service does not depend on the auth service for this.
+ */
+public record PasswordChangedEvent(UUID userId) {
+}
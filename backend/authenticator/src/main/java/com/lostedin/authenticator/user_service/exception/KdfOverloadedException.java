@@ -0,0 +1,17 @@
+package com.lostedin.authenticator.user_service.exception;
+
+import lombok.Getter;
+
+/**
+ * Thrown when the password-hashing pool's queue is full. Surfaces as HTTP 503 with a Retry-After header.
+ */
+@Getter
+public class KdfOverloadedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public KdfOverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,17 @@
+package com.lostedin.authenticator.user_service.exception;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a login attempt exceeds the per-username or per-IP rate. Surfaces as HTTP 429 with a Retry-After header.
+ */
+@Getter
+public class LoginThrottledException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public LoginThrottledException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,28 @@
+package com.lostedin.authenticator.user_service.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.util.UUID;
+
+/**
+ * Access tokens of the user issued before {@code notBefore} (epoch seconds) are revoked.
+ * Rows are kept for one access-token lifetime; {@code TokenEpochStore} loads them at startup, so they outlive a
+ * restart unless the schema is recreated ({@code ddl-auto=create}).
+ */
+@Entity
+@Table(name = "token_epoch")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenEpoch {
+
+    @Id
+    @Column(name = "user_id")
+    private UUID userId;
+    @Column(name = "not_before", nullable = false)
+    private long notBefore;
+
+}
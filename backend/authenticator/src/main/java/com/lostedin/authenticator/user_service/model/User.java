@@ -1,8 +1,11 @@
 package com.lostedin.authenticator.user_service.model;
 
 
+import com.lostedin.authenticator.user_service.config.HibernateCacheConfig;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.UUID;
 
@@ -11,6 +14,8 @@ import java.util.UUID;
 @Setter
 @Builder
 @Table(name = "users")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.USERS)
 @NoArgsConstructor
 @AllArgsConstructor
 public class User {
@@ -18,6 +23,7 @@ public class User {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
+    // Unique case-insensitively: ux_users_username_lower in import.sql (JPA cannot declare expression indexes)
     @Column(nullable = false)
     private String username;
 //    private String email;
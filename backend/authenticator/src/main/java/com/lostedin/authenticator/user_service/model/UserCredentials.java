@@ -1,11 +1,16 @@
 package com.lostedin.authenticator.user_service.model;
 
+import com.lostedin.authenticator.user_service.config.HibernateCacheConfig;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.UUID;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.USER_CREDENTIALS)
 @Setter
 @Getter
 @Builder
@@ -0,0 +1,296 @@
+package com.lostedin.authenticator.user_service.model.token;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Allocation-light verifier for the tokens {@code JwtUtil.buildToken} issues: compact JWS, HMAC-SHA signed,
+ * header exactly {@code {"alg":"HSxxx"}} and a payload holding only {@code sub} (a UUID), {@code iat} and
+ * {@code exp}. The algorithm is picked from the key length the same way JJWT's {@code signWith(key)} does
+ * (HS256 below 384 bits, HS384 below 512 bits, HS512 above), so for the 424-bit dev secret this is HS384.
+ * <p>
+ * Base64url is decoded into thread-confined scratch buffers, the {@link Mac} is created once per thread, and
+ * the three claims are read straight from the payload bytes. Apart from the result, nothing is allocated.
+ * <p>
+ * {@link #verify} has three outcomes: the verified claims, {@link #REJECTED} for a token that is certainly
+ * invalid (bad signature, expired), or {@code null} for anything it does not expect, in which case the caller
+ * must fall back to JJWT.
+ */
+public final class HmacJwtFastVerifier {
+
+    /** Returned for tokens that are definitely invalid; compare by identity. */
+    public static final VerifiedTokenCache.Entry REJECTED = new VerifiedTokenCache.Entry(null, 0, 0);
+
+    private static final int MAX_TOKEN_LENGTH = 2048;
+    private static final int[] BASE64URL = new int[128];
+
+    static {
+        java.util.Arrays.fill(BASE64URL, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) BASE64URL[alphabet.charAt(i)] = i;
+    }
+
+    private final String macAlgorithm;
+    private final String header;
+    private final int signatureLength;
+    private final int signatureChars;
+    private final ThreadLocal<Scratch> scratch;
+
+    public HmacJwtFastVerifier(SecretKey key) {
+        byte[] keyBytes = key.getEncoded();
+        int bits = keyBytes.length * 8;
+        String jwsAlgorithm;
+        if (bits >= 512) {
+            jwsAlgorithm = "HS512";
+            macAlgorithm = "HmacSHA512";
+            signatureLength = 64;
+        } else if (bits >= 384) {
+            jwsAlgorithm = "HS384";
+            macAlgorithm = "HmacSHA384";
+            signatureLength = 48;
+        } else {
+            jwsAlgorithm = "HS256";
+            macAlgorithm = "HmacSHA256";
+            signatureLength = 32;
+        }
+        this.signatureChars = (signatureLength * 8 + 5) / 6;
+        this.header = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("{\"alg\":\"" + jwsAlgorithm + "\"}").getBytes(StandardCharsets.US_ASCII));
+        SecretKeySpec macKey = new SecretKeySpec(keyBytes, macAlgorithm);
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(macKey, macAlgorithm, signatureLength));
+    }
+
+    /**
+     * @param nowMillis current time, compared with {@code exp} the way JJWT does (expired once now is after exp)
+     * @return verified claims, {@link #REJECTED}, or null if JJWT has to decide
+     */
+    public VerifiedTokenCache.Entry verify(String token, long nowMillis) {
+        if (token == null) return null;
+        int length = token.length();
+        if (length > MAX_TOKEN_LENGTH) return null;
+        int headerEnd = header.length();
+        if (length <= headerEnd || token.charAt(headerEnd) != '.' || !token.startsWith(header)) return null;
+        int payloadEnd = token.indexOf('.', headerEnd + 1);
+        if (payloadEnd < 0 || length - payloadEnd - 1 != signatureChars) return null;
+
+        Scratch s = scratch.get();
+
+        // Signature first, as JJWT does
+        if (decode(token, payloadEnd + 1, length, s.actualSignature) != signatureLength) return null;
+        byte[] signingInput = s.signingInput(payloadEnd);
+        for (int i = 0; i < payloadEnd; i++) {
+            char c = token.charAt(i);
+            if (c >= 128) return null;
+            signingInput[i] = (byte) c;
+        }
+        try {
+            s.mac.update(signingInput, 0, payloadEnd);
+            s.mac.doFinal(s.expectedSignature, 0);
+        } catch (ShortBufferException e) {
+            return null;
+        }
+        int diff = 0;
+        for (int i = 0; i < signatureLength; i++) diff |= s.expectedSignature[i] ^ s.actualSignature[i];
+        if (diff != 0) return REJECTED;
+
+        // Claims
+        byte[] json = s.payload(payloadEnd - headerEnd);
+        int jsonLength = decode(token, headerEnd + 1, payloadEnd, json);
+        if (jsonLength < 0) return null;
+        VerifiedTokenCache.Entry claims = new ClaimsReader(json, jsonLength).read();
+        if (claims == null) return null;
+        if (claims.expiresAt() > Long.MAX_VALUE / 1000L) return null;
+        if (claims.isExpired(nowMillis)) return REJECTED;
+        return claims;
+    }
+
+    /**
+     * Decodes canonical unpadded base64url from {@code src[from, to)} into {@code dst}.
+     * @return number of bytes written, or -1 for anything non-canonical or too long for dst
+     */
+    private static int decode(String src, int from, int to, byte[] dst) {
+        int chars = to - from;
+        if (chars % 4 == 1) return -1;
+        int outLength = chars * 6 / 8;
+        if (outLength > dst.length) return -1;
+        int buffer = 0;
+        int bits = 0;
+        int out = 0;
+        for (int i = from; i < to; i++) {
+            char c = src.charAt(i);
+            int value = c < 128 ? BASE64URL[c] : -1;
+            if (value < 0) return -1;
+            buffer = (buffer << 6) | value;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                dst[out++] = (byte) (buffer >> bits);
+            }
+        }
+        // leftover bits must be zero, otherwise several encodings would map to the same bytes
+        if ((buffer & ((1 << bits) - 1)) != 0) return -1;
+        return out;
+    }
+
+    private static final class Scratch {
+        final Mac mac;
+        final byte[] expectedSignature;
+        final byte[] actualSignature;
+        byte[] signingInput = new byte[512];
+        byte[] payload = new byte[384];
+
+        Scratch(SecretKeySpec key, String algorithm, int signatureLength) {
+            try {
+                mac = Mac.getInstance(algorithm);
+                mac.init(key);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(algorithm + " not available", e);
+            }
+            expectedSignature = new byte[signatureLength];
+            actualSignature = new byte[signatureLength];
+        }
+
+        byte[] signingInput(int length) {
+            if (signingInput.length < length) signingInput = new byte[length];
+            return signingInput;
+        }
+
+        byte[] payload(int base64Length) {
+            int length = base64Length * 6 / 8 + 1;
+            if (payload.length < length) payload = new byte[length];
+            return payload;
+        }
+    }
+
+    /**
+     * Reads a flat JSON object holding exactly sub/iat/exp. Anything else (other keys, escapes, duplicates,
+     * fractions, nesting) returns null so JJWT gets to decide.
+     */
+    private static final class ClaimsReader {
+        private final byte[] json;
+        private final int length;
+        private int pos;
+
+        ClaimsReader(byte[] json, int length) {
+            this.json = json;
+            this.length = length;
+        }
+
+        VerifiedTokenCache.Entry read() {
+            UUID subject = null;
+            long issuedAt = -1;
+            long expiresAt = -1;
+            skipWhitespace();
+            if (!consume('{')) return null;
+            while (true) {
+                skipWhitespace();
+                int key = readKey();
+                skipWhitespace();
+                if (!consume(':')) return null;
+                skipWhitespace();
+                switch (key) {
+                    case KEY_SUB -> {
+                        if (subject != null) return null;
+                        subject = readUuid();
+                        if (subject == null) return null;
+                    }
+                    case KEY_IAT -> {
+                        if (issuedAt >= 0) return null;
+                        issuedAt = readLong();
+                        if (issuedAt < 0) return null;
+                    }
+                    case KEY_EXP -> {
+                        if (expiresAt >= 0) return null;
+                        expiresAt = readLong();
+                        if (expiresAt < 0) return null;
+                    }
+                    default -> {
+                        return null;
+                    }
+                }
+                skipWhitespace();
+                if (consume(',')) continue;
+                if (consume('}')) break;
+                return null;
+            }
+            skipWhitespace();
+            if (pos != length || subject == null || issuedAt < 0 || expiresAt < 0) return null;
+            return new VerifiedTokenCache.Entry(subject, issuedAt, expiresAt);
+        }
+
+        private static final int KEY_UNKNOWN = 0;
+        private static final int KEY_SUB = 1;
+        private static final int KEY_IAT = 2;
+        private static final int KEY_EXP = 3;
+
+        private int readKey() {
+            if (pos + 5 > length || json[pos] != '"' || json[pos + 4] != '"') return KEY_UNKNOWN;
+            byte a = json[pos + 1], b = json[pos + 2], c = json[pos + 3];
+            pos += 5;
+            if (a == 's' && b == 'u' && c == 'b') return KEY_SUB;
+            if (a == 'i' && b == 'a' && c == 't') return KEY_IAT;
+            if (a == 'e' && b == 'x' && c == 'p') return KEY_EXP;
+            return KEY_UNKNOWN;
+        }
+
+        // Canonical 8-4-4-4-12 form only; UUID.fromString accepts more, those go to JJWT
+        private UUID readUuid() {
+            if (pos + 38 > length || json[pos] != '"' || json[pos + 37] != '"') return null;
+            int start = pos + 1;
+            long msb = 0;
+            long lsb = 0;
+            int digits = 0;
+            for (int i = 0; i < 36; i++) {
+                byte c = json[start + i];
+                if (i == 8 || i == 13 || i == 18 || i == 23) {
+                    if (c != '-') return null;
+                    continue;
+                }
+                int nibble = Character.digit(c, 16);
+                if (nibble < 0) return null;
+                if (digits < 16) msb = (msb << 4) | nibble;
+                else lsb = (lsb << 4) | nibble;
+                digits++;
+            }
+            pos += 38;
+            return new UUID(msb, lsb);
+        }
+
+        // Non-negative integer without sign, fraction or exponent; -1 otherwise
+        private long readLong() {
+            int start = pos;
+            long value = 0;
+            while (pos < length && json[pos] >= '0' && json[pos] <= '9') {
+                if (pos - start >= 18) return -1;
+                value = value * 10 + (json[pos] - '0');
+                pos++;
+            }
+            if (pos == start) return -1;
+            if (json[start] == '0' && pos - start > 1) return -1; // leading zeros are not valid JSON
+            if (pos < length && (json[pos] == '.' || json[pos] == 'e' || json[pos] == 'E')) return -1;
+            return value;
+        }
+
+        private boolean consume(char c) {
+            if (pos < length && json[pos] == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (pos < length) {
+                byte c = json[pos];
+                if (c != ' ' && c != '\t' && c != '\n' && c != '\r') return;
+                pos++;
+            }
+        }
+    }
+}
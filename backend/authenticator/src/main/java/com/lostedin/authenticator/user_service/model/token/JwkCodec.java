@@ -0,0 +1,128 @@
+package com.lostedin.authenticator.user_service.model.token;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.EllipticCurve;
+import java.security.spec.ECFieldFp;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Public keys to and from RFC 7517/8037 JWKs, for the Ed25519 and P-256 keys {@link SigningAlgorithm} uses.
+ * Shared by the auth service (publishing) and the user service (verifying) so both read the same format.
+ */
+public final class JwkCodec {
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Jwk(String kty, String crv, String kid, String use, String alg, String x, String y) {
+    }
+
+    public record JwkSet(List<Jwk> keys) {
+    }
+
+    // DER prefix of an X.509 SubjectPublicKeyInfo for Ed25519; the raw 32-byte key follows it
+    private static final byte[] ED25519_X509_PREFIX = {
+            0x30, 0x2a, 0x30, 0x05, 0x06, 0x03, 0x2b, 0x65, 0x70, 0x03, 0x21, 0x00
+    };
+    private static final int ED25519_KEY_LENGTH = 32;
+    private static final int P256_COORDINATE_LENGTH = 32;
+    private static final ECParameterSpec P256 = p256();
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private JwkCodec() {
+    }
+
+    public static Jwk toJwk(String kid, SigningAlgorithm algorithm, PublicKey key) {
+        return switch (algorithm) {
+            case EdDSA -> {
+                byte[] encoded = key.getEncoded();
+                byte[] raw = Arrays.copyOfRange(encoded, encoded.length - ED25519_KEY_LENGTH, encoded.length);
+                yield new Jwk("OKP", "Ed25519", kid, "sig", "EdDSA", ENCODER.encodeToString(raw), null);
+            }
+            case ES256 -> {
+                ECPoint w = ((ECPublicKey) key).getW();
+                yield new Jwk("EC", "P-256", kid, "sig", "ES256",
+                        ENCODER.encodeToString(unsigned(w.getAffineX())),
+                        ENCODER.encodeToString(unsigned(w.getAffineY())));
+            }
+            case HS -> throw new IllegalArgumentException("HMAC keys are never published");
+        };
+    }
+
+    /**
+     * @return the public key, or null if the JWK is not a signing key of the given algorithm
+     * @throws GeneralSecurityException if it claims to be one but is malformed
+     */
+    public static PublicKey toPublicKey(Jwk jwk, SigningAlgorithm algorithm) throws GeneralSecurityException {
+        if (jwk == null || jwk.kid() == null || !algorithm.isAsymmetric()) return null;
+        if (!algorithm.kty().equals(jwk.kty()) || !algorithm.crv().equals(jwk.crv())) return null;
+        if (jwk.use() != null && !"sig".equals(jwk.use())) return null;
+        if (jwk.alg() != null && !algorithm.name().equals(jwk.alg())) return null;
+        try {
+            return switch (algorithm) {
+                case EdDSA -> {
+                    byte[] raw = DECODER.decode(jwk.x());
+                    if (raw.length != ED25519_KEY_LENGTH) throw new GeneralSecurityException("Ed25519 x must be 32 bytes");
+                    byte[] encoded = Arrays.copyOf(ED25519_X509_PREFIX, ED25519_X509_PREFIX.length + raw.length);
+                    System.arraycopy(raw, 0, encoded, ED25519_X509_PREFIX.length, raw.length);
+                    yield KeyFactory.getInstance("Ed25519").generatePublic(new X509EncodedKeySpec(encoded));
+                }
+                case ES256 -> {
+                    byte[] x = DECODER.decode(jwk.x());
+                    byte[] y = DECODER.decode(jwk.y());
+                    if (x.length != P256_COORDINATE_LENGTH || y.length != P256_COORDINATE_LENGTH)
+                        throw new GeneralSecurityException("P-256 coordinates must be 32 bytes");
+                    ECPoint point = new ECPoint(new BigInteger(1, x), new BigInteger(1, y));
+                    if (!onCurve(point, P256.getCurve())) throw new GeneralSecurityException("Point is not on P-256");
+                    yield KeyFactory.getInstance("EC").generatePublic(new ECPublicKeySpec(point, P256));
+                }
+                case HS -> null;
+            };
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new GeneralSecurityException("Malformed JWK " + jwk.kid(), e);
+        }
+    }
+
+    private static byte[] unsigned(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length == P256_COORDINATE_LENGTH) return bytes;
+        byte[] out = new byte[P256_COORDINATE_LENGTH];
+        int copy = Math.min(bytes.length, P256_COORDINATE_LENGTH);
+        System.arraycopy(bytes, bytes.length - copy, out, P256_COORDINATE_LENGTH - copy, copy);
+        return out;
+    }
+
+    private static boolean onCurve(ECPoint point, EllipticCurve curve) {
+        BigInteger p = ((ECFieldFp) curve.getField()).getP();
+        BigInteger x = point.getAffineX();
+        BigInteger y = point.getAffineY();
+        if (x.signum() < 0 || x.compareTo(p) >= 0 || y.signum() < 0 || y.compareTo(p) >= 0) return false;
+        BigInteger left = y.multiply(y).mod(p);
+        BigInteger right = x.pow(3).add(curve.getA().multiply(x)).add(curve.getB()).mod(p);
+        return left.equals(right);
+    }
+
+    private static ECParameterSpec p256() {
+        try {
+            AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+            parameters.init(new ECGenParameterSpec("secp256r1"));
+            return parameters.getParameterSpec(ECParameterSpec.class);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("P-256 not available", e);
+        }
+    }
+}
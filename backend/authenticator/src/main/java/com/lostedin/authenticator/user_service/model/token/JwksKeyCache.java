@@ -0,0 +1,131 @@
+package com.lostedin.authenticator.user_service.model.token;
+
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.LocatorAdapter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Verification keys by {@code kid}, fetched from the auth service's JWKS endpoint ({@code jwt.jwks-uri}) so access
+ * tokens are validated locally. The key map is an immutable snapshot swapped on refresh, so lookups never lock.
+ * <p>
+ * The snapshot is refreshed once it is older than {@code jwt.jwks.refresh-interval-seconds}, and early when a token
+ * names an unknown kid (a freshly rotated key), but at most once per {@code jwt.jwks.min-refresh-interval-seconds}
+ * so tokens with made-up kids cannot turn into a stream of fetches. A failed fetch keeps the previous keys.
+ * Requests whose key is cached never wait for a fetch another thread is running.
+ */
+@Slf4j
+@Component
+public class JwksKeyCache extends LocatorAdapter<Key> {
+
+    private final OkHttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final SigningAlgorithm algorithm;
+    private final String jwksUri;
+    private final long refreshIntervalNanos;
+    private final long minRefreshIntervalNanos;
+    private final Counter fetchSuccess;
+    private final Counter fetchFailure;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private volatile Map<String, PublicKey> keys = Map.of();
+    private volatile long fetchedAt;
+    private volatile long attemptedAt;
+    private volatile boolean everAttempted;
+
+    public JwksKeyCache(
+            OkHttpClient httpClient,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${jwt.signing.algorithm:HS}") String algorithm,
+            @Value("${jwt.jwks-uri:http://localhost:${server.port:8080}/.well-known/jwks.json}") String jwksUri,
+            @Value("${jwt.jwks.refresh-interval-seconds:300}") long refreshIntervalSeconds,
+            @Value("${jwt.jwks.min-refresh-interval-seconds:10}") long minRefreshIntervalSeconds
+    ) {
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.algorithm = SigningAlgorithm.fromProperty(algorithm);
+        this.jwksUri = jwksUri;
+        this.refreshIntervalNanos = Duration.ofSeconds(refreshIntervalSeconds).toNanos();
+        this.minRefreshIntervalNanos = Duration.ofSeconds(minRefreshIntervalSeconds).toNanos();
+        this.fetchSuccess = Counter.builder("jwt.jwks.fetch").tag("outcome", "success").register(meterRegistry);
+        this.fetchFailure = Counter.builder("jwt.jwks.fetch").tag("outcome", "failure").register(meterRegistry);
+    }
+
+    @Override
+    protected Key locate(JwsHeader header) {
+        return publicKey(header.getKeyId());
+    }
+
+    public PublicKey publicKey(String kid) {
+        if (kid == null || !algorithm.isAsymmetric()) return null;
+        PublicKey key = keys.get(kid);
+        long now = System.nanoTime();
+        boolean stale = !everAttempted || now - fetchedAt > refreshIntervalNanos;
+        if (key != null && !stale) return key;
+        if (key != null) {
+            // still usable; refresh if nobody else is, but do not wait
+            if (refreshLock.tryLock()) {
+                try {
+                    refresh(now);
+                } finally {
+                    refreshLock.unlock();
+                }
+            }
+            return key;
+        }
+        refreshLock.lock();
+        try {
+            refresh(now);
+        } finally {
+            refreshLock.unlock();
+        }
+        return keys.get(kid);
+    }
+
+    // Caller holds refreshLock
+    private void refresh(long now) {
+        // another thread may have refreshed while this one waited for the lock
+        if (everAttempted && now - attemptedAt < minRefreshIntervalNanos) return;
+        everAttempted = true;
+        attemptedAt = System.nanoTime();
+        Request request = new Request.Builder().url(jwksUri).get().build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (!response.isSuccessful()) throw new IllegalStateException("HTTP " + response.code());
+            JwkCodec.JwkSet set = objectMapper.readValue(response.body().bytes(), JwkCodec.JwkSet.class);
+            Map<String, PublicKey> fresh = new HashMap<>();
+            if (set.keys() != null) {
+                for (JwkCodec.Jwk jwk : set.keys()) {
+                    try {
+                        PublicKey key = JwkCodec.toPublicKey(jwk, algorithm);
+                        if (key != null) fresh.put(jwk.kid(), key);
+                    } catch (GeneralSecurityException e) {
+                        log.warn("Skipping JWK {} from {}: {}", jwk.kid(), jwksUri, e.getMessage());
+                    }
+                }
+            }
+            keys = Map.copyOf(fresh);
+            fetchedAt = attemptedAt;
+            fetchSuccess.increment();
+            log.debug("Loaded {} signing keys from {}", fresh.size(), jwksUri);
+        } catch (Exception e) {
+            fetchFailure.increment();
+            log.warn("JWKS fetch from {} failed, keeping {} cached keys: {}", jwksUri, keys.size(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.lostedin.authenticator.user_service.model.token;
+
+import java.util.Locale;
+
+/**
+ * Value of {@code jwt.signing.algorithm}. HS signs with the shared {@code jwt.secret}; the asymmetric modes sign
+ * with a private key held only by the auth service and publish the public half at {@code /.well-known/jwks.json}.
+ */
+public enum SigningAlgorithm {
+    HS(null, null, null),
+    EdDSA("Ed25519", "OKP", "Ed25519"),
+    ES256("EC", "EC", "P-256");
+
+    private final String keyAlgorithm;
+    private final String kty;
+    private final String crv;
+
+    SigningAlgorithm(String keyAlgorithm, String kty, String crv) {
+        this.keyAlgorithm = keyAlgorithm;
+        this.kty = kty;
+        this.crv = crv;
+    }
+
+    public static SigningAlgorithm fromProperty(String value) {
+        return switch (value.trim().toUpperCase(Locale.ROOT)) {
+            case "HS", "HMAC" -> HS;
+            case "EDDSA", "ED25519" -> EdDSA;
+            case "ES256" -> ES256;
+            default -> throw new IllegalArgumentException("Unsupported jwt.signing.algorithm: " + value);
+        };
+    }
+
+    public boolean isAsymmetric() {
+        return this != HS;
+    }
+
+    /** JCA name for KeyFactory/KeyPairGenerator */
+    public String keyAlgorithm() {
+        return keyAlgorithm;
+    }
+
+    /** JWK "kty" */
+    public String kty() {
+        return kty;
+    }
+
+    /** JWK "crv" */
+    public String crv() {
+        return crv;
+    }
+}
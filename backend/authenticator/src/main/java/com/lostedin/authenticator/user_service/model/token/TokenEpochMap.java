@@ -0,0 +1,188 @@
+package com.lostedin.authenticator.user_service.model.token;
+
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * User id to "not valid before" epoch second: access tokens of the user issued before it are revoked.
+ * <p>
+ * Open addressing with linear probing over three parallel {@code long[]} (id high bits, id low bits, epoch),
+ * about 24 bytes per slot and no per-entry objects. Lookups are optimistic {@link StampedLock} reads that only
+ * retry under the read lock if a writer interfered; writes take the write lock. An entry is dead once
+ * {@code ttlSeconds} have passed since its epoch, because every token it revokes has expired by then; dead
+ * entries read as absent and are dropped by {@link #purge} or when the table would otherwise grow.
+ */
+public final class TokenEpochMap {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final StampedLock lock = new StampedLock();
+    private final long ttlSeconds;
+    private Table table; // replaced as a whole under the write lock
+
+    public TokenEpochMap(int initialCapacity, long ttlSeconds) {
+        if (ttlSeconds <= 0) throw new IllegalArgumentException("ttlSeconds must be > 0");
+        this.ttlSeconds = ttlSeconds;
+        this.table = new Table(capacityFor(Math.max(initialCapacity, 1)));
+    }
+
+    /**
+     * @return the user's epoch, or 0 if there is none or it has expired by {@code nowSeconds}
+     */
+    public long notBefore(UUID userId, long nowSeconds) {
+        long msb = userId.getMostSignificantBits();
+        long lsb = userId.getLeastSignificantBits();
+        long stamp = lock.tryOptimisticRead();
+        long epoch = table.find(msb, lsb);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                epoch = table.find(msb, lsb);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return isLive(epoch, nowSeconds) ? epoch : 0;
+    }
+
+    /**
+     * @return true if a token of the user issued at {@code issuedAt} (epoch seconds) is revoked
+     */
+    public boolean isRevoked(UUID userId, long issuedAt, long nowSeconds) {
+        long epoch = notBefore(userId, nowSeconds);
+        return epoch != 0 && issuedAt < epoch;
+    }
+
+    /**
+     * Moves the user's epoch forward to {@code epoch}; an existing later epoch is kept.
+     */
+    public void raise(UUID userId, long epoch, long nowSeconds) {
+        if (epoch <= 0) throw new IllegalArgumentException("epoch must be > 0");
+        if (!isLive(epoch, nowSeconds)) return;
+        long msb = userId.getMostSignificantBits();
+        long lsb = userId.getLeastSignificantBits();
+        long stamp = lock.writeLock();
+        try {
+            if (table.size + 1 > table.threshold()) {
+                // drop dead entries before deciding to grow
+                Table live = copyLive(table, nowSeconds, 0);
+                table = live.size + 1 > live.threshold() ? copyLive(live, nowSeconds, live.size + 1) : live;
+            }
+            table.put(msb, lsb, epoch);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes dead entries and shrinks the table to fit the rest.
+     * @return number of entries removed
+     */
+    public int purge(long nowSeconds) {
+        long stamp = lock.writeLock();
+        try {
+            int before = table.size;
+            table = copyLive(table, nowSeconds, 0);
+            return before - table.size;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Entries held, including dead ones not purged yet */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return table.size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int capacity() {
+        long stamp = lock.readLock();
+        try {
+            return table.epochs.length;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private boolean isLive(long epoch, long nowSeconds) {
+        return epoch != 0 && nowSeconds < epoch + ttlSeconds;
+    }
+
+    private Table copyLive(Table from, long nowSeconds, int minEntries) {
+        int live = 0;
+        for (long epoch : from.epochs) if (isLive(epoch, nowSeconds)) live++;
+        Table to = new Table(capacityFor(Math.max(live, minEntries)));
+        for (int i = 0; i < from.epochs.length; i++) {
+            if (isLive(from.epochs[i], nowSeconds)) to.put(from.msbs[i], from.lsbs[i], from.epochs[i]);
+        }
+        return to;
+    }
+
+    // Power of two that keeps the load factor at or below 1/2 after a rebuild
+    private static int capacityFor(int entries) {
+        long wanted = Math.max(MIN_CAPACITY, (long) entries * 2);
+        if (wanted > MAX_CAPACITY) throw new IllegalStateException("TokenEpochMap is full");
+        return Integer.highestOneBit((int) (wanted - 1)) << 1;
+    }
+
+    private static final class Table {
+        final long[] msbs;
+        final long[] lsbs;
+        final long[] epochs; // 0 = free slot
+        final int mask;
+        int size;
+
+        Table(int capacity) {
+            msbs = new long[capacity];
+            lsbs = new long[capacity];
+            epochs = new long[capacity];
+            mask = capacity - 1;
+        }
+
+        // grow or purge beyond 3/4 load
+        int threshold() {
+            return epochs.length - (epochs.length >>> 2);
+        }
+
+        // Bounded by the capacity so a read racing a writer cannot spin; the caller validates the stamp
+        long find(long msb, long lsb) {
+            int i = slot(msb, lsb);
+            for (int probes = 0; probes <= mask; probes++) {
+                long epoch = epochs[i];
+                if (epoch == 0) return 0;
+                if (msbs[i] == msb && lsbs[i] == lsb) return epoch;
+                i = (i + 1) & mask;
+            }
+            return 0;
+        }
+
+        // Caller holds the write lock and has made room
+        void put(long msb, long lsb, long epoch) {
+            int i = slot(msb, lsb);
+            while (epochs[i] != 0) {
+                if (msbs[i] == msb && lsbs[i] == lsb) {
+                    if (epoch > epochs[i]) epochs[i] = epoch;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            msbs[i] = msb;
+            lsbs[i] = lsb;
+            epochs[i] = epoch; // written last: a non-zero epoch marks the slot as taken
+            size++;
+        }
+
+        private int slot(long msb, long lsb) {
+            long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            return (int) h & mask;
+        }
+    }
+}
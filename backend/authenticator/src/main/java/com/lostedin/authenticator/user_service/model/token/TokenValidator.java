@@ -1,9 +1,13 @@
 package com.lostedin.authenticator.user_service.model.token;
 
+import com.lostedin.authenticator.user_service.repo.TokenEpochStore;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -14,10 +18,27 @@ import java.util.UUID;
 
 @Component
 public class TokenValidator {
-    private final SecretKey key;
+
+    /**
+     * JWS {@code typ} header of refresh tokens. They are signed with the same (published) keys as access tokens,
+     * so every resource server has to reject tokens carrying it when it expects an access token.
+     */
+    public static final String REFRESH_TOKEN_TYPE = "refresh+jwt";
+
+    private final JwtParser parser;
+    private final HmacJwtFastVerifier fastVerifier; // null when disabled
+    private final VerifiedTokenCache cache; // null when disabled
+    private final TokenEpochStore epochs; // null skips the revocation check (benchmarks)
 
     public TokenValidator(
-            @Value("${jwt.secret}") String secret
+            @Value("${jwt.secret}") String secret,
+            @Value("${jwt.signing.algorithm:HS}") String algorithm,
+            @Value("${jwt.fast-verifier.enabled:true}") boolean fastVerifierEnabled,
+            @Value("${jwt.validation-cache.enabled:true}") boolean cacheEnabled,
+            @Value("${jwt.validation-cache.maximum-size:100000}") long cacheMaximumSize,
+            MeterRegistry meterRegistry,
+            JwksKeyCache jwksKeys,
+            TokenEpochStore epochs
     ) {
         // Use base64 if provided; otherwise bytes directly. Ensure a 256-bit minimum for HS256
         SecretKey tmp;
@@ -28,22 +49,57 @@ public class TokenValidator {
             byte[] bytes = secret.getBytes(StandardCharsets.UTF_8);
             tmp = Keys.hmacShaKeyFor(bytes);
         }
-        this.key = tmp;
+        boolean asymmetric = SigningAlgorithm.fromProperty(algorithm).isAsymmetric();
+        // JwtParser is immutable and thread-safe, so one instance serves every request.
+        // Asymmetric tokens are checked against the auth service's published keys, picked by kid
+        this.parser = asymmetric
+                ? Jwts.parser().keyLocator(jwksKeys).build()
+                : Jwts.parser().verifyWith(tmp).build();
+        this.fastVerifier = fastVerifierEnabled && !asymmetric ? new HmacJwtFastVerifier(tmp) : null;
+        this.cache = cacheEnabled ? new VerifiedTokenCache(cacheMaximumSize, meterRegistry, "access-tokens.user-service") : null;
+        this.epochs = epochs;
     }
 
     public Optional<UUID> validateAccessToken(String token) {
+        if (token == null) return Optional.empty();
+        if (cache != null) {
+            VerifiedTokenCache.Entry cached = cache.get(token);
+            if (cached != null) return accept(cached);
+        }
+        if (fastVerifier != null) {
+            VerifiedTokenCache.Entry verified = fastVerifier.verify(token, System.currentTimeMillis());
+            if (verified == HmacJwtFastVerifier.REJECTED) return Optional.empty();
+            if (verified != null) {
+                if (cache != null) cache.put(token, verified);
+                return accept(verified);
+            }
+            // not a token shape the fast path knows; JJWT decides
+        }
         return parseAndValidate(token);
     }
 
+    // Signature and expiry are fine; the token may still predate a logout, password or 2FA change
+    private Optional<UUID> accept(VerifiedTokenCache.Entry entry) {
+        if (epochs != null && epochs.isRevoked(entry.subject(), entry.issuedAt())) return Optional.empty();
+        return Optional.of(entry.subject());
+    }
+
     private Optional<UUID> parseAndValidate(String token) {
         try {
-            Claims claims = Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload();
+            Jws<Claims> jws = parser.parseSignedClaims(token);
+            if (REFRESH_TOKEN_TYPE.equals(jws.getHeader().getType())) return Optional.empty();
+            Claims claims = jws.getPayload();
             String sub = claims.getSubject();
             if (sub == null) return Optional.empty();
-            return Optional.of(UUID.fromString(sub));
+            UUID subject = UUID.fromString(sub);
+            long issuedAt = claims.getIssuedAt() == null ? 0 : claims.getIssuedAt().getTime() / 1000L;
+            if (cache != null && claims.getExpiration() != null) {
+                cache.put(token, new VerifiedTokenCache.Entry(subject, issuedAt, claims.getExpiration().getTime() / 1000L));
+            }
+            if (epochs != null && epochs.isRevoked(subject, issuedAt)) return Optional.empty();
+            return Optional.of(subject);
         } catch (Exception e) {
             return Optional.empty();
         }
     }
 }
-
@@ -0,0 +1,88 @@
+package com.lostedin.authenticator.user_service.model.token;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of access tokens whose signature has already been verified, keyed by the token's SHA-256 digest
+ * (the token itself is not retained). A hit skips signature verification and claim parsing; each entry expires
+ * together with its token. Hit/miss counters are exported as {@code cache.*{cache=<name>}}.
+ */
+public class VerifiedTokenCache {
+
+    /**
+     * Claims of a verified token; times are epoch seconds.
+     */
+    public record Entry(UUID subject, long issuedAt, long expiresAt) {
+
+        boolean isExpired(long nowMillis) {
+            return nowMillis > expiresAt * 1000L;
+        }
+    }
+
+    private record Key(long a, long b, long c, long d) {}
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private final Cache<Key, Entry> cache;
+
+    public VerifiedTokenCache(long maximumSize, MeterRegistry meterRegistry, String name) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<Key, Entry>() {
+                    @Override
+                    public long expireAfterCreate(Key key, Entry entry, long currentTime) {
+                        long remainingMillis = entry.expiresAt() * 1000L - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMillis));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Key key, Entry entry, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, entry, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Key key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+    }
+
+    /**
+     * @return the cached claims, or null if the token was not verified before or has expired since
+     */
+    public Entry get(String token) {
+        Entry entry = cache.getIfPresent(key(token));
+        if (entry == null || entry.isExpired(System.currentTimeMillis())) return null;
+        return entry;
+    }
+
+    public void put(String token, Entry entry) {
+        cache.put(key(token), entry);
+    }
+
+    private static Key key(String token) {
+        byte[] digest = SHA256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        ByteBuffer buffer = ByteBuffer.wrap(digest);
+        return new Key(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+    }
+}
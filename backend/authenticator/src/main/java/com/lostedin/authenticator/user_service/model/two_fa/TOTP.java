@@ -17,6 +17,14 @@ public class TOTP {
         return Base32.encode(random);
     }
 
+    public byte[] decodeSecret(String base32Secret) {
+        return Base32.decode(base32Secret);
+    }
+
+    public String encodeSecret(byte[] secret) {
+        return Base32.encode(secret);
+    }
+
     public String currentCode(String base32Secret) {
         return codeAt(base32Secret, System.currentTimeMillis() / 1000L, DEFAULT_DIGITS, DEFAULT_PERIOD, DEFAULT_ALGO);
     }
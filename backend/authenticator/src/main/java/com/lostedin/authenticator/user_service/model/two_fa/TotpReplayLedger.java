@@ -0,0 +1,109 @@
+package com.lostedin.authenticator.user_service.model.two_fa;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Last accepted TOTP time step per user, so a code cannot be used twice inside the verification window.
+ * <p>
+ * Users are spread over lock stripes, each an insertion-ordered map. An accepted step re-inserts the user at
+ * the tail, so the head always holds the oldest entry: entries whose step has left the window are dropped from
+ * the head on every write, and when a stripe is still full its oldest entry is evicted to cap memory.
+ * Lookups and updates are O(1) under one stripe lock.
+ * <p>
+ * In-memory and per instance: with several user service instances a code can be replayed once against each.
+ */
+@Component
+public class TotpReplayLedger {
+
+    private static final int STRIPES = 64; // power of two
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final int period;
+    private final int skewSteps;
+    private final Counter replays;
+    private final Counter evictions;
+
+    public TotpReplayLedger(
+            TotpVerifier verifier,
+            @Value("${totp.replay.maximum-size:100000}") int maximumSize,
+            MeterRegistry meterRegistry
+    ) {
+        this.period = verifier.getPeriod();
+        this.skewSteps = verifier.getSkewSteps();
+        int perStripe = Math.max(1, maximumSize / STRIPES);
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe(perStripe);
+        this.replays = Counter.builder("totp.replay.rejected").register(meterRegistry);
+        this.evictions = Counter.builder("totp.replay.evicted")
+                .description("Entries dropped to cap memory before their window passed")
+                .register(meterRegistry);
+        Gauge.builder("totp.replay.size", this, TotpReplayLedger::size).register(meterRegistry);
+    }
+
+    /**
+     * Records {@code step} as used by {@code userId}.
+     * @return false if this or a later step was already accepted for the user
+     */
+    public boolean tryAccept(UUID userId, long step) {
+        long oldestRelevant = System.currentTimeMillis() / 1000L / period - skewSteps;
+        Stripe stripe = stripes[index(userId)];
+        synchronized (stripe) {
+            Long last = stripe.map.get(userId);
+            if (last != null && last >= step) {
+                replays.increment();
+                return false;
+            }
+            stripe.map.remove(userId); // re-insert at the tail
+            stripe.map.put(userId, step);
+            stripe.purge(oldestRelevant, evictions);
+            return true;
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.map.size();
+            }
+        }
+        return size;
+    }
+
+    private static int index(UUID userId) {
+        int h = userId.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    private static final class Stripe {
+        final Map<UUID, Long> map = new LinkedHashMap<>();
+        final int capacity;
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void purge(long oldestRelevant, Counter evictions) {
+            Iterator<Long> head = map.values().iterator();
+            while (head.hasNext()) {
+                long step = head.next();
+                if (step < oldestRelevant) {
+                    head.remove();
+                } else if (map.size() > capacity) {
+                    head.remove();
+                    evictions.increment();
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+}
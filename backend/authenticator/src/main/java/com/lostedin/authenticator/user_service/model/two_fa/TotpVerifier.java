@@ -0,0 +1,204 @@
+package com.lostedin.authenticator.user_service.model.two_fa;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * TOTP (RFC 6238) verification for the configured algorithm, digits, period and skew. The secret is decoded
+ * and the HMAC keyed once per verification, every window step reuses the same thread-local {@link Mac} and
+ * buffers, and codes are compared as numbers, so a verification allocates little beyond the key spec.
+ * <p>
+ * All steps in the window are always computed so response time does not reveal which one matched.
+ */
+@Component
+public class TotpVerifier {
+
+    private static final long[] POW10 = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L,
+            1_000_000_000L, 10_000_000_000L
+    };
+    private static final int[] BASE32 = new int[128];
+
+    static {
+        // same leniency as TOTP's decoder: case-insensitive, '=' as zero bits, other characters skipped
+        Arrays.fill(BASE32, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE32[alphabet.charAt(i)] = i;
+            BASE32[Character.toLowerCase(alphabet.charAt(i))] = i;
+        }
+        BASE32['='] = 0;
+    }
+
+    private final String algorithm;
+    private final int digits;
+    private final int period;
+    private final int skewSteps;
+    private final ThreadLocal<Scratch> scratch;
+
+    public TotpVerifier(
+            @Value("${totp.algorithm:HmacSHA1}") String algorithm,
+            @Value("${totp.digits:6}") int digits,
+            @Value("${totp.period-seconds:30}") int period,
+            @Value("${totp.skew-steps:1}") int skewSteps
+    ) {
+        if (!algorithm.equals("HmacSHA1") && !algorithm.equals("HmacSHA256") && !algorithm.equals("HmacSHA512"))
+            throw new IllegalArgumentException("totp.algorithm must be HmacSHA1, HmacSHA256 or HmacSHA512");
+        if (digits < 6 || digits > 10) throw new IllegalArgumentException("digits must be between 6 and 10");
+        if (period <= 0) throw new IllegalArgumentException("period must be > 0");
+        if (skewSteps < 0) throw new IllegalArgumentException("skew must be >= 0");
+        this.algorithm = algorithm;
+        this.digits = digits;
+        this.period = period;
+        this.skewSteps = skewSteps;
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(algorithm));
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getDigits() {
+        return digits;
+    }
+
+    public int getPeriod() {
+        return period;
+    }
+
+    public int getSkewSteps() {
+        return skewSteps;
+    }
+
+    public boolean verify(String base32Secret, String code) {
+        return verifyStep(base32Secret, code, System.currentTimeMillis() / 1000L) >= 0;
+    }
+
+    /**
+     * @return the time step (unix seconds / period) the code belongs to, or -1 if it matches none in the window.
+     * When two steps in the window produce the same code the later one is returned.
+     */
+    public long verifyStep(String base32Secret, String code, long nowSeconds) {
+        long submitted = parseCode(code);
+        if (submitted < 0 || base32Secret == null) return -1;
+
+        Scratch s = scratch.get();
+        int keyLength = decodeBase32(base32Secret, s);
+        if (isZero(s.key, keyLength)) return -1;
+        try {
+            return verifyStep(s, s.key, keyLength, submitted, nowSeconds);
+        } finally {
+            Arrays.fill(s.key, 0, keyLength, (byte) 0);
+        }
+    }
+
+    /**
+     * Same as {@link #verifyStep(String, String, long)} for an already decoded secret, which is not modified.
+     */
+    public long verifyStep(byte[] secret, String code, long nowSeconds) {
+        long submitted = parseCode(code);
+        if (submitted < 0 || secret == null || isZero(secret, secret.length)) return -1;
+        return verifyStep(scratch.get(), secret, secret.length, submitted, nowSeconds);
+    }
+
+    private long verifyStep(Scratch s, byte[] key, int keyLength, long submitted, long nowSeconds) {
+        long modulus = POW10[digits];
+        long current = nowSeconds / period;
+        long matched = -1;
+        try {
+            s.mac.init(new SecretKeySpec(key, 0, keyLength, algorithm));
+            for (long step = current - skewSteps; step <= current + skewSteps; step++) {
+                if (step < 0) continue;
+                long candidate = truncate(s, step) % modulus;
+                // branch-free select so every step costs the same
+                long same = ((candidate ^ submitted) - 1) >> 63; // -1 if equal, else 0
+                matched = (step & same) | (matched & ~same);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to verify TOTP: " + e.getMessage(), e);
+        }
+        return matched;
+    }
+
+    // RFC 4226 dynamic truncation of HMAC(key, step); the Mac resets to its key after doFinal
+    private static long truncate(Scratch s, long step) throws ShortBufferException {
+        byte[] counter = s.counter;
+        for (int i = 7; i >= 0; i--) {
+            counter[i] = (byte) step;
+            step >>>= 8;
+        }
+        s.mac.update(counter, 0, 8);
+        s.mac.doFinal(s.hash, 0);
+        byte[] hash = s.hash;
+        int offset = hash[s.hashLength - 1] & 0x0F;
+        return ((hash[offset] & 0x7F) << 24)
+                | ((hash[offset + 1] & 0xFF) << 16)
+                | ((hash[offset + 2] & 0xFF) << 8)
+                | (hash[offset + 3] & 0xFF);
+    }
+
+    // Empty or all-zero keys are refused: codes for them can be computed by anyone (a wiped secret looks like this)
+    private static boolean isZero(byte[] key, int length) {
+        int bits = 0;
+        for (int i = 0; i < length; i++) bits |= key[i];
+        return bits == 0;
+    }
+
+    // Exactly `digits` ASCII digits, else -1
+    private long parseCode(String code) {
+        if (code == null || code.length() != digits) return -1;
+        long value = 0;
+        for (int i = 0; i < digits; i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int decodeBase32(String secret, Scratch s) {
+        int needed = secret.length() * 5 / 8;
+        if (s.key.length < needed) s.key = new byte[needed];
+        byte[] key = s.key;
+        int buffer = 0;
+        int bitsLeft = 0;
+        int out = 0;
+        for (int i = 0; i < secret.length(); i++) {
+            char c = secret.charAt(i);
+            if (c >= BASE32.length) continue;
+            int value = BASE32[c];
+            if (value < 0) continue;
+            buffer = (buffer << 5) | value;
+            bitsLeft += 5;
+            if (bitsLeft >= 8) {
+                key[out++] = (byte) (buffer >> (bitsLeft - 8));
+                bitsLeft -= 8;
+            }
+        }
+        return out;
+    }
+
+    private static final class Scratch {
+        final Mac mac;
+        final byte[] counter = new byte[8];
+        final byte[] hash;
+        final int hashLength;
+        byte[] key = new byte[64];
+
+        Scratch(String algorithm) {
+            try {
+                mac = Mac.getInstance(algorithm);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(algorithm + " not available", e);
+            }
+            hashLength = mac.getMacLength();
+            hash = new byte[hashLength];
+        }
+    }
+}
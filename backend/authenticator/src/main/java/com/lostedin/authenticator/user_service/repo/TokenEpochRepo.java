@@ -0,0 +1,42 @@
+package com.lostedin.authenticator.user_service.repo;
+
+import com.lostedin.authenticator.user_service.model.TokenEpoch;
+import jakarta.persistence.QueryHint;
+import lombok.NonNull;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface TokenEpochRepo extends JpaRepository<@NonNull TokenEpoch, @NonNull UUID> {
+
+    /**
+     * Inserts or moves the user's epoch forward in one statement; a later epoch already stored is kept.
+     * Declared to touch only {@code token_epoch}: an unscoped native update would clear every second-level
+     * cache region on each revocation.
+     */
+    @Modifying
+    @Transactional
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "token_epoch"))
+    @Query(value = """
+            INSERT INTO token_epoch (user_id, not_before) VALUES (:userId, :notBefore)
+            ON CONFLICT (user_id) DO UPDATE SET not_before = GREATEST(token_epoch.not_before, EXCLUDED.not_before)
+            """, nativeQuery = true)
+    int raise(@Param("userId") UUID userId, @Param("notBefore") long notBefore);
+
+    List<TokenEpoch> findAllByNotBeforeGreaterThan(long cutoff);
+
+    @Modifying
+    @Transactional
+    @Query("delete from TokenEpoch e where e.notBefore <= :cutoff")
+    int deleteAllByNotBeforeAtMost(@Param("cutoff") long cutoff);
+
+}
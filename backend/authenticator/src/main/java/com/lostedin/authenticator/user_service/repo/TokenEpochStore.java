@@ -0,0 +1,129 @@
+package com.lostedin.authenticator.user_service.repo;
+
+import com.lostedin.authenticator.user_service.model.TokenEpoch;
+import com.lostedin.authenticator.user_service.model.token.TokenEpochMap;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Per-user revocation epochs for access tokens: {@link #revoke} makes every access token of the user issued
+ * before the current second invalid, and {@link #isRevoked} is checked by the token validators on every request.
+ * <p>
+ * Epochs are written through to the {@code token_epoch} table and served from a {@link TokenEpochMap}, which is
+ * loaded from the table at startup. Revocations therefore survive a restart only if the table does: with the
+ * default {@code spring.jpa.hibernate.ddl-auto=create} every table, users and sessions included, is recreated
+ * empty, so nothing is lost that would still matter; with {@code update} or a managed schema they carry over.
+ * Until the load has finished the table is asked directly. Tokens issued in the same second as the revocation
+ * stay valid, so a refresh right after a 2FA change yields a usable token; the window is under a second. Entries
+ * and rows are dropped once an access token lifetime has passed; every token they could revoke has expired by then.
+ * <p>
+ * Revocations made by other instances are only seen after a restart: with several instances validating tokens
+ * lower {@code jwt.access-ttl-seconds} instead of relying on this alone. Exported as {@code token.epochs.entries}
+ * and the {@code token.epochs.revocations} and {@code token.epochs.rejected} counters.
+ */
+@Slf4j
+@Component
+public class TokenEpochStore {
+
+    private final TokenEpochRepo tokenEpochRepo;
+    private final boolean enabled;
+    private final long accessTtlSeconds;
+    private final TokenEpochMap epochs;
+    private final Counter revocations;
+    private final Counter rejected;
+    private volatile boolean ready;
+
+    public TokenEpochStore(
+            TokenEpochRepo tokenEpochRepo,
+            MeterRegistry meterRegistry,
+            @Value("${token-epochs.enabled:true}") boolean enabled,
+            @Value("${token-epochs.initial-capacity:1024}") int initialCapacity,
+            @Value("${jwt.access-ttl-seconds:900}") long accessTtlSeconds
+    ) {
+        this.tokenEpochRepo = tokenEpochRepo;
+        this.enabled = enabled;
+        this.accessTtlSeconds = accessTtlSeconds;
+        this.epochs = new TokenEpochMap(enabled ? initialCapacity : 1, accessTtlSeconds);
+        this.revocations = Counter.builder("token.epochs.revocations")
+                .description("Users whose access tokens were revoked")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("token.epochs.rejected")
+                .description("Validly signed access tokens rejected as revoked")
+                .register(meterRegistry);
+        Gauge.builder("token.epochs.entries", epochs::size)
+                .description("Users with a revocation epoch held in memory")
+                .register(meterRegistry);
+        if (!enabled) log.info("Access token revocation disabled");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) return;
+        long start = System.nanoTime();
+        long now = nowSeconds();
+        List<TokenEpoch> rows = tokenEpochRepo.findAllByNotBeforeGreaterThan(now - accessTtlSeconds);
+        for (TokenEpoch row : rows) epochs.raise(row.getUserId(), row.getNotBefore(), now);
+        ready = true;
+        log.info("Token epochs loaded: {} users ({} ms)", rows.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Revokes every access token of the user issued before the current second.
+     */
+    public void revoke(UUID userId) {
+        if (!enabled) return;
+        long now = nowSeconds();
+        tokenEpochRepo.raise(userId, now);
+        epochs.raise(userId, now, now);
+        revocations.increment();
+    }
+
+    /**
+     * @param issuedAt the token's {@code iat} in epoch seconds, 0 if it has none
+     */
+    public boolean isRevoked(UUID userId, long issuedAt) {
+        if (!enabled) return false;
+        long now = nowSeconds();
+        boolean revoked = ready
+                ? epochs.isRevoked(userId, issuedAt, now)
+                : isRevokedInTable(userId, issuedAt, now);
+        if (revoked) rejected.increment();
+        return revoked;
+    }
+
+    @Scheduled(initialDelayString = "${token-epochs.purge-interval-ms:60000}", fixedDelayString = "${token-epochs.purge-interval-ms:60000}")
+    public void purge() {
+        if (!enabled) return;
+        long now = nowSeconds();
+        int removed = epochs.purge(now);
+        try {
+            tokenEpochRepo.deleteAllByNotBeforeAtMost(now - accessTtlSeconds);
+        } catch (RuntimeException e) {
+            log.error("Token epoch purge failed", e);
+        }
+        if (removed > 0) log.debug("Token epoch purge removed {} entries", removed);
+    }
+
+    // Only before load() has finished
+    private boolean isRevokedInTable(UUID userId, long issuedAt, long now) {
+        Optional<TokenEpoch> row = tokenEpochRepo.findById(userId);
+        if (row.isEmpty()) return false;
+        long notBefore = row.get().getNotBefore();
+        return now < notBefore + accessTtlSeconds && issuedAt < notBefore;
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000L;
+    }
+}
@@ -0,0 +1,112 @@
+package com.lostedin.authenticator.user_service.repo;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lostedin.authenticator.user_service.model.two_fa.TOTP;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-user TOTP state (2FA flag, decoded secret, username for the otpauth label) in front of
+ * {@link UserRepo#findViewById}, so verifying a code or rendering the QR does not query the database each time.
+ * <p>
+ * Secrets are kept decoded in byte arrays rather than as immutable Strings. The cached array is never handed
+ * out or zeroed (a reader could still be using it, and an all-zero key is a key anyone can compute codes for):
+ * {@link #get} returns a copy that the caller wipes once done. Callers must invalidate whenever a user's
+ * credentials change; entries also expire after {@code totp.secret-cache.ttl-seconds} to bound staleness when
+ * another instance made the change. With {@code totp.secret-cache.enabled=false} every call goes to the
+ * repository.
+ */
+@Slf4j
+@Component
+public class TotpSecretCache {
+
+    /**
+     * @param secret decoded secret, null when 2FA is disabled. A copy owned by the caller, who should {@link #wipe}
+     *               it when done.
+     */
+    public record TotpSecret(boolean enabled, byte[] secret, String username) {
+
+        public void wipe() {
+            if (secret != null) Arrays.fill(secret, (byte) 0);
+        }
+    }
+
+    private final UserRepo userRepo;
+    private final TOTP totp;
+    private final Cache<UUID, TotpSecret> cache;
+    // bumped by every invalidate(); prime() only writes if it has not moved since the caller's read
+    private final AtomicLong generation = new AtomicLong();
+
+    public TotpSecretCache(
+            UserRepo userRepo,
+            TOTP totp,
+            MeterRegistry meterRegistry,
+            @Value("${totp.secret-cache.enabled:true}") boolean enabled,
+            @Value("${totp.secret-cache.maximum-size:100000}") long maximumSize,
+            @Value("${totp.secret-cache.ttl-seconds:600}") long ttlSeconds
+    ) {
+        this.userRepo = userRepo;
+        this.totp = totp;
+        if (enabled) {
+            this.cache = Caffeine.newBuilder()
+                    .maximumSize(maximumSize)
+                    .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "totp-secrets");
+        } else {
+            this.cache = null;
+            log.info("TOTP secret cache disabled");
+        }
+    }
+
+    /** @return the user's TOTP state with a fresh copy of the secret */
+    public Optional<TotpSecret> get(UUID userId) {
+        if (cache == null) return userRepo.findViewById(userId).map(this::toEntry);
+        // loading inside the cache's compute makes a concurrent invalidate wait for it instead of being overwritten
+        TotpSecret cached = cache.get(userId, id -> userRepo.findViewById(id).map(this::toEntry).orElse(null));
+        if (cached == null) return Optional.empty();
+        byte[] copy = cached.secret() == null ? null : cached.secret().clone();
+        return Optional.of(new TotpSecret(cached.enabled(), copy, cached.username()));
+    }
+
+    /** Read before loading the credentials that are later passed to {@link #prime} */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Seeds the cache from credentials the caller already loaded (e.g. during login). Does nothing if any
+     * invalidation happened since {@code generationBeforeRead}, because the credentials may predate it.
+     */
+    public void prime(UserCredentialsView user, long generationBeforeRead) {
+        if (cache == null || user == null) return;
+        TotpSecret entry = toEntry(user);
+        // invalidate() bumps first and removes second, and removal waits for this compute: either the check
+        // sees the bump or the removal comes after the write
+        cache.asMap().compute(user.id(), (id, current) -> generation.get() == generationBeforeRead ? entry : current);
+    }
+
+    public void invalidate(UUID userId) {
+        if (cache == null) return;
+        generation.incrementAndGet();
+        cache.invalidate(userId);
+    }
+
+    private TotpSecret toEntry(UserCredentialsView user) {
+        String secret = user.totpSecret();
+        boolean enabled = user.twoFaEnabled();
+        byte[] decoded = enabled && secret != null && !secret.isEmpty() ? totp.decodeSecret(secret) : null;
+        return new TotpSecret(enabled, decoded, user.username());
+    }
+}
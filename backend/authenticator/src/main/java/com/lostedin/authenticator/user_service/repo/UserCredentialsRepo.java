@@ -1,9 +1,14 @@
 package com.lostedin.authenticator.user_service.repo;
 
 import com.lostedin.authenticator.user_service.model.UserCredentials;
+import jakarta.persistence.LockModeType;
 import lombok.NonNull;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 import java.util.UUID;
@@ -13,4 +18,26 @@ public interface UserCredentialsRepo extends JpaRepository<@NonNull UserCredenti
 
     Optional<UserCredentials> getByUserId(UUID id);
 
+    /** Loads the row with {@code SELECT ... FOR UPDATE}, bypassing the second-level cache */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from UserCredentials c where c.id = :id")
+    Optional<UserCredentials> findByIdForUpdate(@Param("id") UUID id);
+
+    /**
+     * Replaces the password hash only if it is still {@code oldHash}, so a background rehash never overwrites
+     * a password change that happened meanwhile (the row stays locked until commit).
+     * <p>
+     * An entity update rather than a bulk {@code update} query: Hibernate evicts the whole
+     * {@code user-credentials} region after bulk DML on the table, which every rehashing login would pay for.
+     * Dirty checking replaces just this user's cache entry.
+     * @return 1 if updated, 0 otherwise
+     */
+    @Transactional
+    default int updatePasswordIfUnchanged(UUID id, String oldHash, String newHash) {
+        Optional<UserCredentials> credentials = findByIdForUpdate(id);
+        if (credentials.isEmpty() || !oldHash.equals(credentials.get().getPassword())) return 0;
+        credentials.get().setPassword(newHash);
+        return 1;
+    }
+
 }
@@ -0,0 +1,17 @@
+package com.lostedin.authenticator.user_service.repo;
+
+import java.util.UUID;
+
+/**
+ * Read-only projection of a user joined with its credentials, loaded in one select by the {@code find*View}
+ * queries of {@link UserRepo}. Going through {@code User.getCredentials()} instead costs a second select,
+ * because the inverse side of the one-to-one cannot be proxied.
+ */
+public record UserCredentialsView(
+        UUID id,
+        String username,
+        String password,
+        boolean twoFaEnabled,
+        String totpSecret
+) {
+}
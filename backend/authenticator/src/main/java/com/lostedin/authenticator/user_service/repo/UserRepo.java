@@ -1,19 +1,83 @@
 package com.lostedin.authenticator.user_service.repo;
 
 import com.lostedin.authenticator.user_service.model.User;
+import com.lostedin.authenticator.user_service.config.HibernateCacheConfig;
+import jakarta.persistence.QueryHint;
 import lombok.NonNull;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepo extends JpaRepository<@NonNull User, @NonNull UUID> {
 
+    // lower(username) matches the unique index from import.sql, so these are index lookups
+    @Query("select u from User u where lower(u.username) = lower(:username)")
     Optional<User> getByUsername(String username);
+    @Query("select count(u) > 0 from User u where lower(u.username) = lower(:username)")
+    boolean existsByUsername(String username);
     @Query("select u from User u where u.id = :id")
     Optional<User> getByUserId(UUID id);
 
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = HibernateCacheConfig.USER_VIEWS)
+    })
+    @Query("""
+            select new com.lostedin.authenticator.user_service.repo.UserCredentialsView(
+                u.id, u.username, c.password, c.two_fa_enabled, c.totp_secret)
+            from User u join u.credentials c
+            where u.id = :id
+            """)
+    Optional<UserCredentialsView> findViewById(UUID id);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = HibernateCacheConfig.USER_VIEWS)
+    })
+    @Query("""
+            select new com.lostedin.authenticator.user_service.repo.UserCredentialsView(
+                u.id, u.username, c.password, c.two_fa_enabled, c.totp_secret)
+            from User u join u.credentials c
+            where lower(u.username) = lower(:username)
+            """)
+    Optional<UserCredentialsView> findViewByUsername(String username);
+
+    /** All usernames through a server-side cursor; must be consumed inside a transaction and closed */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select u.username from User u")
+    Stream<String> streamAllUsernames();
+
+    /**
+     * Inserts the user and its credentials in one statement. If the name is already taken (case-insensitively,
+     * by the unique index) nothing is inserted, so of concurrent signups for one name exactly one succeeds.
+     * Hibernate does not see this write: callers evict {@link HibernateCacheConfig#USER_VIEWS} afterwards.
+     * @return the new user's id, or an empty list if the username is taken
+     */
+    @Transactional
+    @Query(value = """
+            WITH new_user AS (
+                INSERT INTO users (id, username) VALUES (:id, :username)
+                ON CONFLICT DO NOTHING
+                RETURNING id
+            )
+            INSERT INTO user_credentials (id, password, two_fa_enabled)
+            SELECT id, :password, false FROM new_user
+            RETURNING id
+            """, nativeQuery = true)
+    List<UUID> insertIfUsernameFree(
+            @Param("id") UUID id,
+            @Param("username") String username,
+            @Param("password") String passwordHash
+    );
+
 }
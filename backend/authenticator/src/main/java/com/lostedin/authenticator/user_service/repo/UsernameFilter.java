@@ -0,0 +1,164 @@
+package com.lostedin.authenticator.user_service.repo;
+
+import com.lostedin.authenticator.user_service.util.SeededHash;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.SecureRandom;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filter of registered usernames, so that lookups for names that were never registered skip the database.
+ * <p>
+ * Sized once from {@code username-filter.expected-insertions} and {@code false-positive-rate}, filled at startup
+ * by streaming the {@code users} table and updated by {@code UserService.createUser}. Until the initial build
+ * has finished every name is reported as possibly present. Bits are set with CAS on an {@link AtomicLongArray},
+ * so adds and lookups need no locking. Names are lowercased like the case-insensitive unique index. Usernames are
+ * never renamed or removed here, so the filter can only become more conservative.
+ * <p>
+ * Only users created through this instance are added after startup: with several user-service instances writing
+ * the same table set {@code username-filter.enabled=false}. Exported as {@code username.filter.bits},
+ * {@code .entries}, {@code .expected-fpp} (from the current fill) and the {@code .lookups{result}} and
+ * {@code .false-positives} counters.
+ */
+@Slf4j
+@Component
+public class UsernameFilter {
+
+    private final boolean enabled;
+    private final UserRepo userRepo;
+    private final TransactionTemplate readOnly;
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final long seed = new SecureRandom().nextLong();
+    private final AtomicLong setBits = new AtomicLong();
+    private final AtomicLong entries = new AtomicLong();
+    private final Counter absent;
+    private final Counter present;
+    private final Counter falsePositives;
+    private volatile boolean ready;
+
+    public UsernameFilter(
+            UserRepo userRepo,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${username-filter.enabled:true}") boolean enabled,
+            @Value("${username-filter.expected-insertions:1000000}") long expectedInsertions,
+            @Value("${username-filter.false-positive-rate:0.01}") double falsePositiveRate
+    ) {
+        if (expectedInsertions < 1) throw new IllegalArgumentException("username-filter.expected-insertions must be > 0");
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1))
+            throw new IllegalArgumentException("username-filter.false-positive-rate must be between 0 and 1");
+        this.enabled = enabled;
+        this.userRepo = userRepo;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+
+        // m = -n ln p / (ln 2)^2, k = m/n ln 2
+        long m = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (m + 63) / 64);
+        this.bits = new AtomicLongArray(enabled ? words : 0);
+        this.bitCount = words * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+
+        this.absent = Counter.builder("username.filter.lookups")
+                .description("Username lookups answered by the filter")
+                .tag("result", "absent")
+                .register(meterRegistry);
+        this.present = Counter.builder("username.filter.lookups")
+                .description("Username lookups answered by the filter")
+                .tag("result", "maybe")
+                .register(meterRegistry);
+        this.falsePositives = Counter.builder("username.filter.false-positives")
+                .description("Lookups the filter passed on that found no user in the database")
+                .register(meterRegistry);
+        Gauge.builder("username.filter.bits", () -> enabled ? bitCount : 0)
+                .description("Size of the username Bloom filter")
+                .baseUnit("bits")
+                .register(meterRegistry);
+        Gauge.builder("username.filter.entries", entries::get)
+                .description("Usernames added to the filter")
+                .register(meterRegistry);
+        Gauge.builder("username.filter.expected-fpp", this::expectedFalsePositiveRate)
+                .description("False-positive rate implied by the current fill")
+                .register(meterRegistry);
+        if (!enabled) log.info("Username filter disabled");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (!enabled) return;
+        long start = System.nanoTime();
+        readOnly.executeWithoutResult(status -> {
+            try (Stream<String> usernames = userRepo.streamAllUsernames()) {
+                usernames.forEach(this::add);
+            }
+        });
+        ready = true;
+        log.info("Username filter built: {} names, {} KiB, k={}, expected fpp {} ({} ms)", entries.get(),
+                bitCount / 8 / 1024, hashCount, String.format("%.4f", expectedFalsePositiveRate()),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * @return false only if the username has definitely never been registered
+     */
+    public boolean mightContain(String username) {
+        if (!enabled || !ready || username == null) return true;
+        String key = username.toLowerCase(Locale.ROOT);
+        // two seeds give the double-hashing pair
+        long h1 = SeededHash.hash(key, seed);
+        long h2 = SeededHash.hash(key, ~seed) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long index = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                absent.increment();
+                return false;
+            }
+        }
+        present.increment();
+        return true;
+    }
+
+    public void add(String username) {
+        if (!enabled || username == null) return;
+        String key = username.toLowerCase(Locale.ROOT);
+        long h1 = SeededHash.hash(key, seed);
+        long h2 = SeededHash.hash(key, ~seed) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long index = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & mask) != 0) break;
+            } while (!bits.compareAndSet(word, current, current | mask));
+            if ((current & mask) == 0) setBits.incrementAndGet();
+        }
+        entries.incrementAndGet();
+    }
+
+    /** Called when {@link #mightContain} said maybe but the database had no such user */
+    public void recordFalsePositive(String username) {
+        if (enabled && ready && username != null) falsePositives.increment();
+    }
+
+    // Probability that all k probed bits are set for a name that was never added
+    private double expectedFalsePositiveRate() {
+        if (!enabled || bitCount == 0) return 0;
+        return Math.pow((double) setBits.get() / bitCount, hashCount);
+    }
+}
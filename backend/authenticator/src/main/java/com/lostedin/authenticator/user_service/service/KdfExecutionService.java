@@ -0,0 +1,151 @@
+package com.lostedin.authenticator.user_service.service;
+
+import com.lostedin.authenticator.user_service.exception.KdfOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs password KDF work (PBKDF2, bcrypt) on a fixed pool sized to the cores with a bounded queue,
+ * so a burst of logins cannot take every CPU away from token refreshes and TOTP checks.
+ * Once the queue is full new work is rejected immediately with {@link KdfOverloadedException}.
+ * <p>
+ * KDF threads only hash: futures from {@link #submit} are completed on Spring Boot's application task executor,
+ * so whatever callers chain onto them (inserts, cache updates, row locks) cannot hold a KDF thread while it
+ * waits on the database.
+ * <p>
+ * Metrics: {@code kdf.queue.depth}, {@code kdf.pool.active}, {@code kdf.queue.wait} (time spent queued),
+ * {@code kdf.execution} and {@code kdf.rejected}.
+ */
+@Slf4j
+@Service
+public class KdfExecutionService {
+
+    private final ThreadPoolExecutor pool;
+    private final Executor completionExecutor;
+    private final long retryAfterSeconds;
+    private final Timer waitTimer;
+    private final Timer executionTimer;
+    private final Counter rejectedCounter;
+
+    public KdfExecutionService(
+            @Value("${kdf.pool-size:0}") int poolSize,                  // 0 = one thread per core
+            @Value("${kdf.queue-capacity:64}") int queueCapacity,
+            @Value("${kdf.retry-after-seconds:1}") long retryAfterSeconds,
+            MeterRegistry meterRegistry,
+            @Qualifier("applicationTaskExecutor") Executor completionExecutor
+    ) {
+        this.completionExecutor = completionExecutor;
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "kdf-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        Gauge.builder("kdf.queue.depth", pool, p -> p.getQueue().size())
+                .description("Password hashing tasks waiting for a KDF thread")
+                .register(meterRegistry);
+        Gauge.builder("kdf.pool.active", pool, ThreadPoolExecutor::getActiveCount)
+                .description("KDF threads currently hashing")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("kdf.queue.wait")
+                .description("Time a password hashing task spent queued before it started")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.executionTimer = Timer.builder("kdf.execution")
+                .description("Time spent hashing on a KDF thread")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("kdf.rejected")
+                .description("Password hashing tasks rejected because the queue was full")
+                .register(meterRegistry);
+
+        log.info("KDF pool started with {} threads and a queue of {}", threads, queueCapacity);
+    }
+
+    /**
+     * Runs the task on the KDF pool and waits for its result.
+     * @throws KdfOverloadedException if the queue is full
+     */
+    public <T> T run(Supplier<T> task) {
+        return await(submit(task));
+    }
+
+    /**
+     * Waits for a future built on {@link #submit}, rethrowing what the task threw.
+     */
+    public <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+            if (cause instanceof Error error) throw error;
+            throw new IllegalStateException("Password hashing failure", cause);
+        }
+    }
+
+    /**
+     * Queues the task on the KDF pool without waiting for it. The future completes on the application task
+     * executor, so dependent stages never run on a KDF thread.
+     * @throws KdfOverloadedException if the queue is full
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long queuedAt = System.nanoTime();
+        try {
+            pool.execute(() -> {
+                long startedAt = System.nanoTime();
+                waitTimer.record(startedAt - queuedAt, TimeUnit.NANOSECONDS);
+                T result;
+                try {
+                    result = task.get();
+                } catch (Throwable t) {
+                    handOff(() -> future.completeExceptionally(t));
+                    return;
+                } finally {
+                    executionTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+                handOff(() -> future.complete(result));
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw new KdfOverloadedException("Too many concurrent sign-ins, try again shortly", retryAfterSeconds);
+        }
+        return future;
+    }
+
+    private void handOff(Runnable completion) {
+        try {
+            completionExecutor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            completion.run(); // application executor shutting down; better a KDF thread than a lost result
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,184 @@
+package com.lostedin.authenticator.user_service.service;
+
+import com.lostedin.authenticator.user_service.exception.LoginThrottledException;
+import com.lostedin.authenticator.user_service.util.SeededHash;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+/**
+ * Rate limit for login attempts, keyed by username and by client IP, checked before the password KDF runs.
+ * {@link UserService#validateUserAsync} takes the attempt, so logins through {@code /auth/authorize} (either user
+ * transport) and direct calls to {@code /user/validate} are each throttled exactly once. The HTTP transport calls
+ * {@code /user/validate} from the auth service's own address and passes the real client in
+ * {@link #CLIENT_IP_HEADER}, which is only believed from {@code login.throttle.trusted-callers}.
+ * <p>
+ * Each key gets a token bucket ({@code capacity} attempts, refilled at {@code refill-per-minute}), kept as a
+ * GCRA theoretical arrival time so that the whole bucket fits in one {@code long} next to a tag of the key's
+ * hash. Buckets live in a fixed {@link AtomicLongArray} of 4-way sets and are updated with CAS only, so memory
+ * is bounded by {@code slots} and there are no locks on the login path. A new key takes the slot of the
+ * bucket closest to full; a refilled bucket is indistinguishable from a missing one, so only evicting a
+ * partially drained bucket loses state (counted in {@code login.throttle.evicted}).
+ * <p>
+ * Two keys sharing a set and tag share a bucket; with a 24-bit tag and a random per-process hash seed that is
+ * rare and only ever errs towards throttling. Rejections are counted in {@code login.throttle.rejected{key}}.
+ */
+@Slf4j
+@Component
+public class LoginThrottle {
+
+    /** Client IP of a login relayed by the auth service's HTTP transport */
+    public static final String CLIENT_IP_HEADER = "X-Login-Client-Ip";
+
+    private final boolean enabled;
+    private final Set<String> trustedCallers;
+    private final BucketTable usernames;
+    private final BucketTable ips;
+    private final long seed = new SecureRandom().nextLong();
+    private final long origin = System.nanoTime();
+
+    public LoginThrottle(
+            MeterRegistry meterRegistry,
+            @Value("${login.throttle.enabled:true}") boolean enabled,
+            @Value("${login.throttle.slots:65536}") int slots,
+            @Value("${login.throttle.username.capacity:10}") int usernameCapacity,
+            @Value("${login.throttle.username.refill-per-minute:5}") double usernameRefillPerMinute,
+            @Value("${login.throttle.ip.capacity:50}") int ipCapacity,
+            @Value("${login.throttle.ip.refill-per-minute:60}") double ipRefillPerMinute,
+            @Value("${login.throttle.trusted-callers:127.0.0.1,0:0:0:0:0:0:0:1}") String trustedCallers
+    ) {
+        this.enabled = enabled;
+        this.trustedCallers = Arrays.stream(trustedCallers.split(","))
+                .map(String::trim)
+                .filter(caller -> !caller.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.usernames = new BucketTable("username", slots, usernameCapacity, usernameRefillPerMinute, meterRegistry);
+        this.ips = new BucketTable("ip", slots, ipCapacity, ipRefillPerMinute, meterRegistry);
+        if (!enabled) log.info("Login throttle disabled");
+    }
+
+    /**
+     * Takes one attempt from the client IP's bucket and then from the username's.
+     * @throws LoginThrottledException if either bucket is empty
+     */
+    public void acquire(String username, String clientIp) {
+        if (!enabled) return;
+        long now = nowMillis();
+        long wait = ips.tryAcquire(hash(clientIp), now);
+        if (wait == 0) {
+            // usernames are matched case-insensitively so case variants share one bucket
+            wait = usernames.tryAcquire(hash(username == null ? null : username.toLowerCase(Locale.ROOT)), now);
+        }
+        if (wait > 0) {
+            throw new LoginThrottledException("Too many login attempts, try again later", (wait + 999) / 1000);
+        }
+    }
+
+    /**
+     * @param relayedClientIp value of {@link #CLIENT_IP_HEADER}, may be null
+     * @return the IP to throttle on: the relayed one if the request came from a trusted caller, else the peer
+     */
+    public String clientIp(String remoteAddr, String relayedClientIp) {
+        if (relayedClientIp == null || relayedClientIp.isBlank() || !trustedCallers.contains(remoteAddr)) return remoteAddr;
+        return relayedClientIp.trim();
+    }
+
+    // Milliseconds since startup, offset by one so 0 can mean "empty slot"
+    private long nowMillis() {
+        return (System.nanoTime() - origin) / 1_000_000L + 1;
+    }
+
+    private long hash(String key) {
+        return SeededHash.hash(key == null ? "" : key, seed);
+    }
+
+    /**
+     * Slot layout: 24-bit tag | 40-bit theoretical arrival time in ms (about 34 years). 0 is an empty slot.
+     */
+    static final class BucketTable {
+
+        private static final int WAYS = 4;
+        private static final int TAG_SHIFT = 40;
+        private static final long TIME_MASK = (1L << TAG_SHIFT) - 1;
+
+        private final AtomicLongArray slots;
+        private final int setMask;
+        private final long interval;  // ms per token
+        private final long tolerance; // ms of burst beyond a single request
+        private final Counter rejected;
+        private final Counter evicted;
+
+        BucketTable(String name, int slotCount, int capacity, double refillPerMinute, MeterRegistry meterRegistry) {
+            if (slotCount < WAYS || Integer.bitCount(slotCount) != 1)
+                throw new IllegalArgumentException("login.throttle.slots must be a power of two >= " + WAYS);
+            if (capacity < 1) throw new IllegalArgumentException("login.throttle." + name + ".capacity must be >= 1");
+            if (!(refillPerMinute > 0))
+                throw new IllegalArgumentException("login.throttle." + name + ".refill-per-minute must be > 0");
+            this.slots = new AtomicLongArray(slotCount);
+            this.setMask = slotCount - WAYS;
+            this.interval = Math.max(1, Math.round(60_000 / refillPerMinute));
+            this.tolerance = (capacity - 1) * interval;
+            this.rejected = Counter.builder("login.throttle.rejected")
+                    .description("Login attempts rejected before password verification")
+                    .tag("key", name)
+                    .register(meterRegistry);
+            this.evicted = Counter.builder("login.throttle.evicted")
+                    .description("Partially drained throttle buckets dropped to make room for new keys")
+                    .tag("key", name)
+                    .register(meterRegistry);
+        }
+
+        /**
+         * @return 0 if the attempt is allowed, otherwise the milliseconds until the next one would be
+         */
+        long tryAcquire(long hash, long now) {
+            int set = (int) hash & setMask;
+            long tag = hash >>> TAG_SHIFT;
+            if (tag == 0) tag = 1;
+            while (true) {
+                int victim = set;
+                long victimValue = slots.get(set);
+                long victimTat = Long.MAX_VALUE;
+                int match = -1;
+                long matchValue = 0;
+                for (int i = set; i < set + WAYS; i++) {
+                    long value = slots.get(i);
+                    if (value != 0 && value >>> TAG_SHIFT == tag) {
+                        match = i;
+                        matchValue = value;
+                        break;
+                    }
+                    long tat = value & TIME_MASK;
+                    if (tat < victimTat) {
+                        victim = i;
+                        victimValue = value;
+                        victimTat = tat;
+                    }
+                }
+
+                if (match >= 0) {
+                    long tat = Math.max(matchValue & TIME_MASK, now);
+                    long wait = tat - now - tolerance;
+                    if (wait > 0) {
+                        rejected.increment();
+                        return wait;
+                    }
+                    if (slots.compareAndSet(match, matchValue, (tag << TAG_SHIFT) | (tat + interval))) return 0;
+                } else if (slots.compareAndSet(victim, victimValue, (tag << TAG_SHIFT) | (now + interval))) {
+                    if (victimTat > now) evicted.increment();
+                    return 0;
+                }
+                // lost a race for the slot, re-read the set
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.lostedin.authenticator.user_service.service;
+
+import com.lostedin.authenticator.user_service.util.PasswordEncrypter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Picks the PBKDF2 iteration count at startup so that one hash takes about
+ * {@code password.pbkdf2.calibration.target-ms} on this machine, clamped to [min-iterations, max-iterations] and
+ * rounded to a multiple of 1000.
+ * <p>
+ * Measures a few hashes at a probe cost after a short warm-up and scales by the median. With calibration
+ * disabled the fixed {@code password.pbkdf2.iterations} is used. Exported as {@code password.pbkdf2.iterations}.
+ * <p>
+ * Once the cost is settled it also hashes a random password at that cost, which logins for unknown usernames
+ * verify against (see {@link #dummyHash()}), so the login path never pays for building it.
+ */
+@Slf4j
+@Component
+public class PasswordCostCalibrator {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final int PROBE_ITERATIONS = 50_000;
+
+    private final boolean enabled;
+    private final int fixedIterations;
+    private final long targetMillis;
+    private final int minIterations;
+    private final int maxIterations;
+
+    private volatile String dummyHash;
+
+    public PasswordCostCalibrator(
+            MeterRegistry meterRegistry,
+            @Value("${password.pbkdf2.calibration.enabled:true}") boolean enabled,
+            @Value("${password.pbkdf2.iterations:210000}") int fixedIterations,
+            @Value("${password.pbkdf2.calibration.target-ms:200}") long targetMillis,
+            @Value("${password.pbkdf2.calibration.min-iterations:100000}") int minIterations,
+            @Value("${password.pbkdf2.calibration.max-iterations:1000000}") int maxIterations,
+            @Value("${password.pbkdf2.rehash-tolerance:0.25}") double rehashTolerance
+    ) {
+        if (minIterations < 1 || maxIterations < minIterations)
+            throw new IllegalArgumentException("password.pbkdf2.calibration needs 0 < min-iterations <= max-iterations");
+        this.enabled = enabled;
+        this.fixedIterations = fixedIterations;
+        this.targetMillis = targetMillis;
+        this.minIterations = minIterations;
+        this.maxIterations = maxIterations;
+        PasswordEncrypter.setRehashTolerance(rehashTolerance);
+        Gauge.builder("password.pbkdf2.iterations", PasswordEncrypter::getIterations)
+                .description("PBKDF2 iteration count used for new password hashes")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void calibrate() {
+        if (!enabled) {
+            PasswordEncrypter.setIterations(fixedIterations);
+            log.info("PBKDF2 calibration disabled, using {} iterations", fixedIterations);
+            dummyHash = PasswordEncrypter.hash(UUID.randomUUID().toString());
+            return;
+        }
+        for (int i = 0; i < WARMUP_ROUNDS; i++) PasswordEncrypter.hash("calibration", PROBE_ITERATIONS);
+        long[] nanos = new long[MEASURED_ROUNDS];
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            PasswordEncrypter.hash("calibration", PROBE_ITERATIONS);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        double nanosPerIteration = (double) nanos[MEASURED_ROUNDS / 2] / PROBE_ITERATIONS;
+        long wanted = Math.round(targetMillis * 1_000_000L / nanosPerIteration / 1000.0) * 1000L;
+        int chosen = (int) Math.max(minIterations, Math.min(maxIterations, wanted));
+        PasswordEncrypter.setIterations(chosen);
+        log.info("PBKDF2 calibrated to {} iterations ({} ns/iteration, target {} ms, bounds [{}, {}])",
+                chosen, String.format("%.1f", nanosPerIteration), targetMillis, minIterations, maxIterations);
+        dummyHash = PasswordEncrypter.hash(UUID.randomUUID().toString());
+    }
+
+    /** Hash of a random password at the calibrated cost; ready before any bean depending on this one runs */
+    public String dummyHash() {
+        return dummyHash;
+    }
+}
@@ -0,0 +1,100 @@
+package com.lostedin.authenticator.user_service.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lostedin.authenticator.user_service.util.QrUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Renders the otpauth QR code and remembers the result per user and format. The image encodes the user's
+ * secret, so entries are dropped by {@link #invalidate} whenever 2FA is enabled or disabled, expire
+ * {@code totp.qr.cache.ttl-seconds} after rendering however often they are read, and are only served while
+ * their digest of the URI still matches (which covers changes made by another instance).
+ */
+@Component
+public class TotpQrRenderer {
+
+    public enum Format {
+        PNG("image/png"),
+        SVG("image/svg+xml");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+    }
+
+    /** @param digest of format, size and otpauth URI */
+    public record Rendered(String digest, byte[] body) {
+    }
+
+    private record Key(UUID userId, Format format) {
+    }
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private final int size;
+    private final Cache<Key, Rendered> cache;
+
+    public TotpQrRenderer(
+            MeterRegistry meterRegistry,
+            @Value("${totp.qr.size:256}") int size,
+            @Value("${totp.qr.cache.maximum-size:10000}") long maximumSize,
+            @Value("${totp.qr.cache.ttl-seconds:600}") long ttlSeconds
+    ) {
+        this.size = size;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "totp-qr");
+    }
+
+    public Rendered render(UUID userId, String otpauthUri, Format format) {
+        Key key = new Key(userId, format);
+        String digest = digest(otpauthUri, format);
+        Rendered cached = cache.getIfPresent(key);
+        if (cached != null && cached.digest().equals(digest)) return cached;
+        byte[] body = switch (format) {
+            case PNG -> QrUtil.generatePng(otpauthUri, size);
+            case SVG -> QrUtil.generateSvg(otpauthUri, size).getBytes(StandardCharsets.UTF_8);
+        };
+        Rendered rendered = new Rendered(digest, body);
+        cache.put(key, rendered);
+        return rendered;
+    }
+
+    /** Drops the user's images; call whenever their secret changes or 2FA is disabled */
+    public void invalidate(UUID userId) {
+        for (Format format : Format.values()) cache.invalidate(new Key(userId, format));
+    }
+
+    private String digest(String otpauthUri, Format format) {
+        MessageDigest digest = SHA256.get();
+        digest.update((format.name() + '|' + size + '|' + otpauthUri).getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest.digest(), 16));
+    }
+}
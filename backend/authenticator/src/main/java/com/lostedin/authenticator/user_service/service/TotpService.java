@@ -1,11 +1,10 @@
 package com.lostedin.authenticator.user_service.service;
 
-import com.lostedin.authenticator.user_service.model.User;
-import com.lostedin.authenticator.user_service.model.UserCredentials;
 import com.lostedin.authenticator.user_service.model.token.TokenValidator;
 import com.lostedin.authenticator.user_service.model.two_fa.TOTP;
-import com.lostedin.authenticator.user_service.repo.UserCredentialsRepo;
-import com.lostedin.authenticator.user_service.repo.UserRepo;
+import com.lostedin.authenticator.user_service.model.two_fa.TotpReplayLedger;
+import com.lostedin.authenticator.user_service.model.two_fa.TotpVerifier;
+import com.lostedin.authenticator.user_service.repo.TotpSecretCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -19,33 +18,51 @@ import java.util.UUID;
 public class TotpService {
 
     private final TOTP totp;
+    private final TotpVerifier totpVerifier;
+    private final TotpReplayLedger replayLedger;
     private final TokenValidator tokenValidator;
-    private final UserCredentialsRepo credentialsRepo;
+    private final TotpSecretCache secretCache; // consulted before UserCredentialsRepo
+    private final TotpQrRenderer qrRenderer;
 
     public boolean verifyCode(String code, UUID userId){
 
-        UserCredentials credentials = getCredentials(userId);
+        TotpSecretCache.TotpSecret secret = getSecret(userId);
+        if(!secret.enabled())
+            return false;
 
-        return totp.verifyCode(credentials.getTotp_secret(),code,1);
+        long step;
+        try {
+            step = totpVerifier.verifyStep(secret.secret(),code,System.currentTimeMillis()/1000L);
+        } finally {
+            secret.wipe();
+        }
+        // a code is good for one use: reject it (and any earlier one) once a step has been accepted
+        return step >= 0 && replayLedger.tryAccept(userId,step);
 
     }
 
     public String getTotpUri(UUID userId){
 
-        UserCredentials credentials = getCredentials(userId);
-        String secret = credentials.getTotp_secret();
-        User user = credentials.getUser();
+        TotpSecretCache.TotpSecret secret = getSecret(userId);
+        String base32Secret = secret.secret() == null ? null : totp.encodeSecret(secret.secret());
+        secret.wipe();
+
+        // The authenticator app must generate codes the way the verifier checks them
+        return totp.buildOtpAuthUri("Secure-Authorizer",secret.username(),base32Secret,
+                totpVerifier.getDigits(),totpVerifier.getPeriod(),totpVerifier.getAlgorithm());
+    }
 
-        return totp.buildOtpAuthUri("Secure-Authorizer",user.getUsername(),secret);
+    public TotpQrRenderer.Rendered getTotpQr(UUID userId, TotpQrRenderer.Format format){
+        return qrRenderer.render(userId,getTotpUri(userId),format);
     }
 
 
-    private UserCredentials getCredentials(UUID userId){
-        Optional<UserCredentials> optionalCredentials = credentialsRepo.getByUserId(userId);
-        if(optionalCredentials.isEmpty()){
+    private TotpSecretCache.TotpSecret getSecret(UUID userId){
+        Optional<TotpSecretCache.TotpSecret> optionalSecret = secretCache.get(userId);
+        if(optionalSecret.isEmpty()){
             throw new RuntimeException("Internal Server Error: User not found");
         }
-        return optionalCredentials.get();
+        return optionalSecret.get();
     }
 
 }
@@ -0,0 +1,56 @@
+package com.lostedin.authenticator.user_service.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * Command-line entry point of {@link UserImportService}, active only when a file is given:
+ * <pre>
+ * java -jar authenticator.jar --user-import.file=users.csv --spring.jpa.hibernate.ddl-auto=none [--user-import.format=csv|ndjson]
+ * </pre>
+ * The schema must already exist and must be left alone: {@link UserImportSchemaGuard} refuses to start with any
+ * {@code ddl-auto} other than {@code none} or {@code validate}, since the default {@code create} would drop the
+ * users before importing (and make a resume silently skip everything before the checkpoint).
+ * The application exits when the import is done (status 1 if any row failed) unless
+ * {@code --user-import.exit-when-done=false}.
+ */
+@Component
+@ConditionalOnProperty("user-import.file")
+public class UserImportRunner implements ApplicationRunner {
+
+    private final UserImportService importService;
+    private final ConfigurableApplicationContext context;
+    private final Path file;
+    private final String format;
+    private final boolean exitWhenDone;
+
+    public UserImportRunner(
+            UserImportService importService,
+            ConfigurableApplicationContext context,
+            @Value("${user-import.file}") String file,
+            @Value("${user-import.format:}") String format,
+            @Value("${user-import.exit-when-done:true}") boolean exitWhenDone
+    ) {
+        this.importService = importService;
+        this.context = context;
+        this.file = Path.of(file);
+        this.format = format;
+        this.exitWhenDone = exitWhenDone;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        UserImportService.Report report = importService.importFile(file, UserImportService.Format.of(file, format));
+        if (exitWhenDone) {
+            int status = SpringApplication.exit(context, () -> report.failed() == 0 ? 0 : 1);
+            System.exit(status);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.lostedin.authenticator.user_service.service;
+
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Stops an import run before Hibernate starts if it would touch the schema. With the default
+ * {@code spring.jpa.hibernate.ddl-auto=create} every start drops {@code users} and {@code user_credentials}: an
+ * import would wipe the existing users, and a resume would skip every checkpointed line of a now empty table.
+ * Runs as a bean factory post-processor because by the time any runner executes the tables are already gone.
+ */
+@Component
+@ConditionalOnProperty("user-import.file")
+public class UserImportSchemaGuard implements BeanFactoryPostProcessor, EnvironmentAware {
+
+    private static final Set<String> SAFE = Set.of("none", "validate");
+
+    private Environment environment;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+        check("spring.jpa.hibernate.ddl-auto");
+        check("spring.jpa.properties.hibernate.hbm2ddl.auto");
+    }
+
+    private void check(String property) {
+        String value = environment.getProperty(property);
+        if (value == null || SAFE.contains(value.trim().toLowerCase(Locale.ROOT))) return;
+        throw new IllegalStateException(property + "=" + value + " would recreate the schema before the import "
+                + "runs, dropping existing users; run the import with --spring.jpa.hibernate.ddl-auto=none (or validate)");
+    }
+}
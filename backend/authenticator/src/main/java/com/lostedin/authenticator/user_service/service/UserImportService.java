@@ -0,0 +1,318 @@
+package com.lostedin.authenticator.user_service.service;
+
+import com.lostedin.authenticator.user_service.config.HibernateCacheConfig;
+import com.lostedin.authenticator.user_service.repo.UsernameFilter;
+import com.lostedin.authenticator.user_service.util.PasswordEncrypter;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Bulk import of users from CSV (header with {@code username} and {@code password} columns) or NDJSON
+ * ({@code {"username": ..., "password": ...}} per line), read line by line so the file is never held in memory.
+ * <p>
+ * Rows are processed in chunks of {@code user-import.batch-size}: passwords are hashed in parallel on a
+ * dedicated fork-join pool (values that already are {@code pbkdf2$} hashes are stored as they are), then the
+ * chunk is written with one JDBC batch of the same conflict-safe insert signup uses, in one transaction. If the
+ * batch fails it is retried row by row so a bad row only fails itself.
+ * <p>
+ * Next to the input, {@code <file>.errors} gets one line per rejected row (line number, username, reason) and
+ * {@code <file>.checkpoint} the last line whose chunk was committed. A rerun resumes after the checkpoint; rows of
+ * a chunk that committed just before a crash show up as duplicates then.
+ */
+@Slf4j
+@Service
+public class UserImportService {
+
+    public enum Format {
+        CSV, NDJSON;
+
+        /** From {@code configured} if given, else from the file extension */
+        public static Format of(Path file, String configured) {
+            if (configured != null && !configured.isBlank()) return valueOf(configured.trim().toUpperCase(Locale.ROOT));
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".csv")) return CSV;
+            if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) return NDJSON;
+            throw new IllegalArgumentException("Cannot tell the format of " + file + ", set user-import.format");
+        }
+    }
+
+    public record Report(long rows, long imported, long duplicates, long failed, long elapsedMillis) {
+        public double rowsPerSecond() {
+            return elapsedMillis == 0 ? 0 : rows * 1000.0 / elapsedMillis;
+        }
+    }
+
+    private record Row(long line, String username, String password, String error) {
+        Row failed(String reason) {
+            return new Row(line, username, null, reason);
+        }
+    }
+
+    private record JsonRow(String username, String password) {
+    }
+
+    private static final int MAX_USERNAME_LENGTH = 255;
+    private static final String INSERT = """
+            WITH new_user AS (
+                INSERT INTO users (id, username) VALUES (?, ?)
+                ON CONFLICT DO NOTHING
+                RETURNING id
+            )
+            INSERT INTO user_credentials (id, password, two_fa_enabled)
+            SELECT id, ?, false FROM new_user
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final UsernameFilter usernameFilter;
+    private final EntityManagerFactory entityManagerFactory;
+    private final int batchSize;
+    private final int parallelism;
+
+    public UserImportService(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper,
+            UsernameFilter usernameFilter,
+            EntityManagerFactory entityManagerFactory,
+            @Value("${user-import.batch-size:1000}") int batchSize,
+            @Value("${user-import.parallelism:0}") int parallelism     // 0 = one thread per core
+    ) {
+        if (batchSize < 1) throw new IllegalArgumentException("user-import.batch-size must be > 0");
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.usernameFilter = usernameFilter;
+        this.entityManagerFactory = entityManagerFactory;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    public Report importFile(Path input, Format format) throws IOException {
+        Path checkpointFile = sibling(input, ".checkpoint");
+        Path errorsFile = sibling(input, ".errors");
+        long resumeAfter = readCheckpoint(checkpointFile);
+        if (resumeAfter > 0) log.info("Resuming import of {} after line {}", input, resumeAfter);
+
+        long start = System.nanoTime();
+        long[] totals = new long[4]; // rows, imported, duplicates, failed
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             BufferedWriter errors = Files.newBufferedWriter(errorsFile, StandardCharsets.UTF_8,
+                     StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            int[] columns = null;
+            List<Row> chunk = new ArrayList<>(batchSize);
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (format == Format.CSV && columns == null) {
+                    if (line.isBlank()) continue;
+                    columns = csvHeader(line);
+                    continue;
+                }
+                if (lineNumber <= resumeAfter || line.isBlank()) continue;
+                chunk.add(format == Format.CSV ? csvRow(line, lineNumber, columns) : jsonRow(line, lineNumber));
+                if (chunk.size() == batchSize) {
+                    flush(chunk, pool, errors, totals, checkpointFile, start);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) flush(chunk, pool, errors, totals, checkpointFile, start);
+        } finally {
+            pool.shutdown();
+        }
+
+        Report report = new Report(totals[0], totals[1], totals[2], totals[3], (System.nanoTime() - start) / 1_000_000);
+        log.info("Import of {} finished: {} rows, {} imported, {} duplicates, {} failed in {} s ({} rows/s). Errors: {}",
+                input, report.rows(), report.imported(), report.duplicates(), report.failed(),
+                report.elapsedMillis() / 1000, Math.round(report.rowsPerSecond()), errorsFile);
+        return report;
+    }
+
+    private void flush(List<Row> chunk, ForkJoinPool pool, BufferedWriter errors, long[] totals,
+                       Path checkpointFile, long start) throws IOException {
+        List<Row> prepared = pool.submit(() -> chunk.parallelStream().map(this::prepare).toList()).join();
+
+        List<Row> valid = new ArrayList<>(prepared.size());
+        for (Row row : prepared) {
+            if (row.error() != null) {
+                writeError(errors, row);
+                totals[3]++;
+            } else {
+                valid.add(row);
+            }
+        }
+
+        String[] failures = new String[valid.size()];
+        int[] counts = insert(valid, failures);
+        for (int i = 0; i < valid.size(); i++) {
+            Row row = valid.get(i);
+            if (counts[i] == 0) {
+                writeError(errors, row.failed("username already taken"));
+                totals[2]++;
+            } else if (counts[i] == Statement.EXECUTE_FAILED) {
+                writeError(errors, row.failed(failures[i]));
+                totals[3]++;
+            } else {
+                usernameFilter.add(row.username());
+                totals[1]++;
+            }
+        }
+        totals[0] += chunk.size();
+        errors.flush();
+        // these rows bypassed Hibernate, so cached "no such user" results may be stale now
+        entityManagerFactory.getCache().unwrap(org.hibernate.Cache.class).evictQueryRegion(HibernateCacheConfig.USER_VIEWS);
+        writeCheckpoint(checkpointFile, chunk.getLast().line());
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        log.info("Imported through line {}: {} rows, {} imported, {} duplicates, {} failed ({} rows/s)",
+                chunk.getLast().line(), totals[0], totals[1], totals[2], totals[3], totals[0] * 1000 / elapsedMillis);
+    }
+
+    // Validation and hashing; runs on the fork-join pool
+    private Row prepare(Row row) {
+        if (row.error() != null) return row;
+        if (row.username() == null || row.username().isBlank()) return row.failed("username is required");
+        if (row.username().length() > MAX_USERNAME_LENGTH) return row.failed("username is longer than " + MAX_USERNAME_LENGTH);
+        String password = row.password();
+        if (password == null) return row.failed("password is required");
+        if (password.startsWith("pbkdf2$")) {
+            if (PasswordEncrypter.iterations(password) <= 0 || password.split("\\$").length != 4)
+                return row.failed("malformed pbkdf2 hash");
+            return row;
+        }
+        if (password.length() < 8) return row.failed("password must be at least 8 characters long");
+        return new Row(row.line(), row.username(), PasswordEncrypter.hash(password), null);
+    }
+
+    /**
+     * One batch in one transaction; if that fails, row by row so the bad rows can be reported.
+     * @return per row: 1 inserted, 0 name taken, {@link Statement#EXECUTE_FAILED} failed with the reason in failures
+     */
+    private int[] insert(List<Row> rows, String[] failures) {
+        if (rows.isEmpty()) return new int[0];
+        try {
+            int[][] counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(INSERT, rows, rows.size(),
+                    (statement, row) -> {
+                        statement.setObject(1, UUID.randomUUID());
+                        statement.setString(2, row.username());
+                        statement.setString(3, row.password());
+                    }));
+            return counts[0];
+        } catch (DataAccessException e) {
+            log.warn("Batch starting at line {} failed ({}), retrying row by row", rows.getFirst().line(),
+                    e.getMostSpecificCause().getMessage());
+        }
+        int[] counts = new int[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            Row row = rows.get(i);
+            try {
+                counts[i] = jdbcTemplate.update(INSERT, UUID.randomUUID(), row.username(), row.password());
+            } catch (DataAccessException e) {
+                counts[i] = Statement.EXECUTE_FAILED;
+                failures[i] = e.getMostSpecificCause().getMessage();
+            }
+        }
+        return counts;
+    }
+
+    private Row jsonRow(String line, long lineNumber) {
+        try {
+            JsonRow row = objectMapper.readValue(line, JsonRow.class);
+            return new Row(lineNumber, row.username(), row.password(), null);
+        } catch (JacksonException e) {
+            return new Row(lineNumber, null, null, "invalid JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private static int[] csvHeader(String line) {
+        List<String> names = csvFields(line);
+        int username = -1;
+        int password = -1;
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i).trim().toLowerCase(Locale.ROOT);
+            if (name.equals("username")) username = i;
+            else if (name.equals("password")) password = i;
+        }
+        if (username < 0 || password < 0)
+            throw new IllegalArgumentException("CSV header needs username and password columns, got: " + line);
+        return new int[]{username, password};
+    }
+
+    private static Row csvRow(String line, long lineNumber, int[] columns) {
+        List<String> fields = csvFields(line);
+        if (fields == null) return new Row(lineNumber, null, null, "unterminated quote");
+        if (fields.size() <= Math.max(columns[0], columns[1])) return new Row(lineNumber, null, null, "missing columns");
+        return new Row(lineNumber, fields.get(columns[0]), fields.get(columns[1]), null);
+    }
+
+    // RFC 4180 fields of a single line ("" escapes a quote inside quotes); null if a quote is left open
+    private static List<String> csvFields(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') field.append(c);
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"') field.append(line.charAt(++i));
+                else quoted = false;
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) return null;
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static void writeError(BufferedWriter errors, Row row) throws IOException {
+        errors.write(row.line() + "\t" + (row.username() == null ? "" : row.username()) + "\t" + row.error());
+        errors.newLine();
+    }
+
+    private static long readCheckpoint(Path checkpointFile) throws IOException {
+        if (!Files.exists(checkpointFile)) return 0;
+        return Long.parseLong(Files.readString(checkpointFile).trim());
+    }
+
+    private static void writeCheckpoint(Path checkpointFile, long line) throws IOException {
+        Path temp = sibling(checkpointFile, ".tmp");
+        Files.writeString(temp, Long.toString(line));
+        Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Path sibling(Path file, String suffix) {
+        return file.resolveSibling(file.getFileName() + suffix);
+    }
+}
@@ -1,22 +1,31 @@
 package com.lostedin.authenticator.user_service.service;
 
 
+import com.lostedin.authenticator.user_service.config.HibernateCacheConfig;
 import com.lostedin.authenticator.user_service.dto.SignUpDto;
 import com.lostedin.authenticator.user_service.dto.ResponseDto;
 import com.lostedin.authenticator.user_service.dto.UserDataDto;
-import com.lostedin.authenticator.user_service.model.User;
+import com.lostedin.authenticator.user_service.dto.UsernameAvailabilityDto;
 import com.lostedin.authenticator.user_service.model.UserCredentials;
+import com.lostedin.authenticator.user_service.repo.TotpSecretCache;
 import com.lostedin.authenticator.user_service.repo.UserCredentialsRepo;
+import com.lostedin.authenticator.user_service.repo.UserCredentialsView;
 import com.lostedin.authenticator.user_service.repo.UserRepo;
+import com.lostedin.authenticator.user_service.repo.UsernameFilter;
+import com.lostedin.authenticator.user_service.exception.KdfOverloadedException;
+import com.lostedin.authenticator.user_service.exception.LoginThrottledException;
 import com.lostedin.authenticator.user_service.util.PasswordEncrypter;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Service
@@ -25,66 +34,141 @@ public class UserService {
 
     private final UserRepo userRepo;
     private final UserCredentialsRepo credentialsRepo;
+    private final KdfExecutionService kdf;
+    private final TotpSecretCache totpSecretCache;
+    private final UsernameFilter usernameFilter;
+    private final EntityManagerFactory entityManagerFactory;
+    // holds the dummy hash unknown-user logins verify against, built once calibration has picked the cost
+    private final PasswordCostCalibrator costCalibrator;
+    private final LoginThrottle loginThrottle;
 //    private final EntityManager entityManager;
 
     public ResponseDto createUser(SignUpDto userDto){
-        if (userRepo.getByUsername(userDto.getUsername()).isPresent()) {
-            return ResponseDto.builder().status(409).message("Username already taken").build();
+        return kdf.await(createUserAsync(userDto));
+    }
+
+    /**
+     * Same as {@link #createUser} without waiting for the hash: the caller gets the KDF future, and the insert
+     * runs on the application task executor once the hash is ready (see {@link KdfExecutionService#submit}).
+     * @throws KdfOverloadedException right away if the KDF queue is full
+     */
+    public CompletableFuture<ResponseDto> createUserAsync(SignUpDto userDto){
+        if (userDto.getUsername() == null || userDto.getUsername().isBlank()) {
+            return CompletableFuture.completedFuture(ResponseDto.builder().status(400).message("Username is required").build());
         }
 
         if (userDto.getPassword() == null || userDto.getPassword().length() < 8) {
-            return ResponseDto.builder().status(400).message("Password must be at least 8 characters long").build();
+            return CompletableFuture.completedFuture(ResponseDto.builder().status(400).message("Password must be at least 8 characters long").build());
         }
 
-        String encryptedPassword = PasswordEncrypter.hash(userDto.getPassword());
-
-        User user = User.builder()
-                .username(userDto.getUsername())
-                .build();
-        user = userRepo.save(user);
+        return kdf.submit(() -> PasswordEncrypter.hash(userDto.getPassword()))
+                .thenApply(encryptedPassword -> insertUser(userDto.getUsername(), encryptedPassword));
+    }
 
-        UserCredentials credentials = UserCredentials.builder()
-                .user(user)
-                .password(encryptedPassword)
-                .build();
-        credentialsRepo.saveAndFlush(credentials);
-        return UserDataDto.builder().status(201).message("User created").id(user.getId()).build();
+    private ResponseDto insertUser(String username, String encryptedPassword){
+        // No availability read first: the unique index decides, atomically, inside the insert
+        List<UUID> created = userRepo.insertIfUsernameFree(UUID.randomUUID(), username, encryptedPassword);
+        if (created.isEmpty()) {
+            return ResponseDto.builder().status(409).message("Username already taken").build();
+        }
+        usernameFilter.add(username);
+        // the insert bypassed Hibernate, so a cached "no such user" for this name has to go
+        entityManagerFactory.getCache().unwrap(org.hibernate.Cache.class).evictQueryRegion(HibernateCacheConfig.USER_VIEWS);
+        return UserDataDto.builder().status(201).message("User created").id(created.getFirst()).build();
     }
 
     public ResponseDto getUser(UUID id){
-        Optional<User> optionalUser = userRepo.getByUserId(id);
+        Optional<UserCredentialsView> optionalUser = userRepo.findViewById(id);
         if(optionalUser.isEmpty())
             return ResponseDto.builder().status(404).message("User not found").build();
 
-        User user = optionalUser.get();
-        UserCredentials credentials = user.getCredentials();
+        UserCredentialsView user = optionalUser.get();
         return UserDataDto.builder()
                 .status(200)
                 .id(id)
-                .username(user.getUsername())
-                .password(credentials.getPassword())
-                .is_2fa_enabled(credentials.isTwo_fa_enabled())
-                .totp_secret(credentials.getTotp_secret())
+                .username(user.username())
+                .password(user.password())
+                .is_2fa_enabled(user.twoFaEnabled())
+                .totp_secret(user.totpSecret())
                 .build();
     }
 
-    public ResponseDto validateUser(String username, String password){
+    public ResponseDto validateUser(String username, String password, String clientIp){
+        return kdf.await(validateUserAsync(username, password, clientIp));
+    }
 
+    /**
+     * Same as {@link #validateUser}: the user is looked up on the calling thread, the password is verified on
+     * the KDF pool, and the cache updates and the rehash are chained on the application task executor. Every login path ends up here, so this is where the
+     * attempt is counted against the login throttle.
+     * @throws LoginThrottledException right away if the username or client IP is over its login rate
+     * @throws KdfOverloadedException right away if the KDF queue is full
+     */
+    public CompletableFuture<ResponseDto> validateUserAsync(String username, String password, String clientIp){
         log.debug("Validating user {} with password {}", username, password);
-        Optional<User> optionalUser = userRepo.getByUsername(username);
-        if (optionalUser.isEmpty())
-            return ResponseDto.builder().status(404).message("User not found").build();
-        
-        User user = optionalUser.get();
-        UserCredentials credentials = user.getCredentials();
-        if (credentials == null || credentials.getPassword() == null) {
-            return ResponseDto.builder().status(500).message("Internal Server Error").build();
+        loginThrottle.acquire(username, clientIp);
+        long totpGeneration = totpSecretCache.generation(); // before the read, see TotpSecretCache.prime
+        Optional<UserCredentialsView> optionalUser = Optional.empty();
+        if (usernameFilter.mightContain(username)) {
+            optionalUser = userRepo.findViewByUsername(username);
+            if (optionalUser.isEmpty()) usernameFilter.recordFalsePositive(username);
+        }
+        if (optionalUser.isEmpty()) {
+            // same KDF work as a wrong password, so response time does not reveal whether the account exists
+            return kdf.submit(() -> PasswordEncrypter.verify(password, costCalibrator.dummyHash()))
+                    .thenApply(ignored -> ResponseDto.builder().status(404).message("User not found").build());
         }
 
-        boolean ok = PasswordEncrypter.verify(password, credentials.getPassword());
-        return ok ?
-                UserDataDto.builder().status(200).id(user.getId()).is_2fa_enabled(credentials.isTwo_fa_enabled()).build() :
-                ResponseDto.builder().status(403).message("Wrong credentials").build();
+        UserCredentialsView user = optionalUser.get();
+        if (user.password() == null) {
+            return CompletableFuture.completedFuture(ResponseDto.builder().status(500).message("Internal Server Error").build());
+        }
+
+        return kdf.submit(() -> PasswordEncrypter.verify(password, user.password())).thenApply(ok -> {
+            // the 2FA step of this login then finds the secret without another credentials load
+            if (ok && user.twoFaEnabled()) totpSecretCache.prime(user, totpGeneration);
+            if (ok && PasswordEncrypter.needsRehash(user.password())) rehashInBackground(user.id(), password, user.password());
+            return ok ?
+                    UserDataDto.builder().status(200).id(user.id()).is_2fa_enabled(user.twoFaEnabled()).build() :
+                    ResponseDto.builder().status(403).message("Wrong credentials").build();
+        });
+    }
+
+    public ResponseDto checkUsernameAvailable(String username){
+        if (username == null || username.isBlank())
+            return ResponseDto.builder().status(400).message("Username is required").build();
+        return UsernameAvailabilityDto.builder()
+                .status(200)
+                .username(username)
+                .available(!isTaken(username))
+                .build();
+    }
+
+    // A definite "absent" from the filter skips the database
+    private boolean isTaken(String username){
+        if (!usernameFilter.mightContain(username)) return false;
+        boolean taken = userRepo.existsByUsername(username);
+        if (!taken) usernameFilter.recordFalsePositive(username);
+        return taken;
+    }
+
+    // The plaintext is only available at login, so that is when a hash outside the current cost gets replaced
+    private void rehashInBackground(UUID userId, String password, String oldHash){
+        try {
+            kdf.submit(() -> PasswordEncrypter.hash(password))
+                    .thenAccept(newHash -> {
+                        int updated = credentialsRepo.updatePasswordIfUnchanged(userId, oldHash, newHash);
+                        log.debug("Rehashed password of user {} from {} to {} iterations{}", userId,
+                                PasswordEncrypter.iterations(oldHash), PasswordEncrypter.iterations(newHash),
+                                updated == 1 ? "" : " (skipped, password changed meanwhile)");
+                    })
+                    .exceptionally(e -> {
+                        log.warn("Background rehash for user {} failed: {}", userId, e.getMessage());
+                        return null;
+                    });
+        } catch (KdfOverloadedException e) {
+            log.debug("KDF pool busy, rehash for user {} deferred to a later login", userId);
+        }
     }
 
     public ResponseDto get2faSecretIfEnabled(UUID id){
@@ -2,14 +2,18 @@ package com.lostedin.authenticator.user_service.service;
 
 import com.lostedin.authenticator.user_service.dto.ResponseDto;
 import com.lostedin.authenticator.user_service.dto.UserSettingsDto;
-import com.lostedin.authenticator.user_service.model.User;
+import com.lostedin.authenticator.user_service.event.PasswordChangedEvent;
 import com.lostedin.authenticator.user_service.model.UserCredentials;
 import com.lostedin.authenticator.user_service.model.two_fa.TOTP;
+import com.lostedin.authenticator.user_service.repo.TokenEpochStore;
+import com.lostedin.authenticator.user_service.repo.TotpSecretCache;
 import com.lostedin.authenticator.user_service.repo.UserCredentialsRepo;
+import com.lostedin.authenticator.user_service.repo.UserCredentialsView;
 import com.lostedin.authenticator.user_service.repo.UserRepo;
 import com.lostedin.authenticator.user_service.util.PasswordEncrypter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
@@ -23,19 +27,23 @@ public class UserSettingsService {
     private final UserRepo userRepo;
     private final UserCredentialsRepo credentialsRepo;
     private final TOTP totp;
+    private final KdfExecutionService kdf;
+    private final TotpSecretCache totpSecretCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TokenEpochStore tokenEpochStore;
+    private final TotpQrRenderer qrRenderer;
 
     public UserSettingsDto getUserSettings(UUID userId){
-        Optional<User> optionalUser = userRepo.getByUserId(userId);
+        Optional<UserCredentialsView> optionalUser = userRepo.findViewById(userId);
         if(optionalUser.isEmpty()){
             throw new RuntimeException("Internal Server Error: User not found");
         }
-        User user = optionalUser.get();
-        UserCredentials credentials = user.getCredentials();
+        UserCredentialsView user = optionalUser.get();
         return UserSettingsDto.builder()
-                .username(user.getUsername())
-                .password(credentials.getPassword())
-                .is_2fa_enabled(credentials.isTwo_fa_enabled())
-                .totp_secret(credentials.getTotp_secret())
+                .username(user.username())
+                .password(user.password())
+                .is_2fa_enabled(user.twoFaEnabled())
+                .totp_secret(user.totpSecret())
                 .build();
     }
 
@@ -49,6 +57,9 @@ public class UserSettingsService {
         userCredentials.setTwo_fa_enabled(true);
         userCredentials.setTotp_secret(secret);
         credentialsRepo.saveAndFlush(userCredentials);
+        totpSecretCache.invalidate(userId);
+        qrRenderer.invalidate(userId);
+        tokenEpochStore.revoke(userId);
         return secret;
     }
 
@@ -61,6 +72,9 @@ public class UserSettingsService {
         userCredentials.setTwo_fa_enabled(false);
         userCredentials.setTotp_secret(null);
         credentialsRepo.saveAndFlush(userCredentials);
+        totpSecretCache.invalidate(userId);
+        qrRenderer.invalidate(userId);
+        tokenEpochStore.revoke(userId);
     }
 
     public ResponseDto changePassword(UUID userId, String oldPassword , String newPassword){
@@ -69,15 +83,17 @@ public class UserSettingsService {
             throw new RuntimeException("Internal Server Error: User not found");
         }
         UserCredentials userCredentials = credentials.get();
-        if(!PasswordEncrypter.verify(oldPassword, userCredentials.getPassword()))
+        if(!kdf.run(() -> PasswordEncrypter.verify(oldPassword, userCredentials.getPassword())))
             return ResponseDto.builder().status(400).message("Wrong password").build();
         if(newPassword.length() < 8)
             return ResponseDto.builder().status(400).message("Password must be at least 8 characters long").build();
         if(newPassword.equals(oldPassword))
             return ResponseDto.builder().status(400).message("New password must be different from old one").build();
 
-        userCredentials.setPassword(PasswordEncrypter.hash(newPassword));
+        userCredentials.setPassword(kdf.run(() -> PasswordEncrypter.hash(newPassword)));
         credentialsRepo.saveAndFlush(userCredentials);
+        totpSecretCache.invalidate(userId);
+        eventPublisher.publishEvent(new PasswordChangedEvent(userId));
         return ResponseDto.builder().status(200).message("Password changed").build();
     }
 }
@@ -1,33 +1,76 @@
 package com.lostedin.authenticator.user_service.util;
 
-import javax.crypto.SecretKeyFactory;
-import javax.crypto.spec.PBEKeySpec;
-import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Objects;
 
 
 public class PasswordEncrypter {
 
-    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    // PBKDF2WithHmacSHA256, computed by Pbkdf2Sha256
     private static final int SALT_LENGTH_BYTES = 16; // 128-bit salt
     private static final int HASH_LENGTH_BITS = 256; // 256-bit hash
     private static final int DEFAULT_ITERATIONS = 210_000; // OWASP recommended order of magnitude
 
     private static final SecureRandom SECURE_RANDOM = new SecureRandom();
 
+    // Cost for new hashes; set once at startup by PasswordCostCalibrator. Stored hashes carry their own count.
+    private static volatile int iterations = DEFAULT_ITERATIONS;
+    private static volatile double rehashTolerance = 0.25;
+
     private PasswordEncrypter() {}
 
+    public static int getIterations() {
+        return iterations;
+    }
+
+    public static void setIterations(int iterations) {
+        if (iterations < 1) throw new IllegalArgumentException("iterations must be > 0");
+        PasswordEncrypter.iterations = iterations;
+    }
+
+    /** Relative distance from the current cost a stored hash may be before {@link #needsRehash} says so */
+    public static void setRehashTolerance(double tolerance) {
+        if (tolerance < 0) throw new IllegalArgumentException("tolerance must be >= 0");
+        PasswordEncrypter.rehashTolerance = tolerance;
+    }
+
     public static String hash(String rawPassword) {
+        return hash(rawPassword, iterations);
+    }
+
+    public static String hash(String rawPassword, int iterations) {
         Objects.requireNonNull(rawPassword, "rawPassword");
         byte[] salt = new byte[SALT_LENGTH_BYTES];
         SECURE_RANDOM.nextBytes(salt);
-        byte[] derived = pbkdf2(rawPassword.toCharArray(), salt, DEFAULT_ITERATIONS, HASH_LENGTH_BITS);
+        byte[] derived = pbkdf2(rawPassword.toCharArray(), salt, iterations, HASH_LENGTH_BITS);
         String saltB64 = Base64.getEncoder().encodeToString(salt);
         String hashB64 = Base64.getEncoder().encodeToString(derived);
-        return String.format("pbkdf2$%d$%s$%s", DEFAULT_ITERATIONS, saltB64, hashB64);
+        return String.format("pbkdf2$%d$%s$%s", iterations, saltB64, hashB64);
+    }
+
+    /**
+     * True when the stored hash's iteration count is outside the tolerance band around the current cost
+     * (too weak for this hardware, or needlessly slow). Unparseable hashes are left alone.
+     */
+    public static boolean needsRehash(String stored) {
+        int storedIterations = iterations(stored);
+        if (storedIterations <= 0) return false;
+        int current = iterations;
+        return Math.abs(storedIterations - current) > current * rehashTolerance;
+    }
+
+    /** Iteration count recorded in a stored hash, or -1 if it is not a pbkdf2 hash */
+    public static int iterations(String stored) {
+        if (stored == null || !stored.startsWith("pbkdf2$")) return -1;
+        int end = stored.indexOf('$', 7);
+        if (end < 0) return -1;
+        try {
+            return Integer.parseInt(stored, 7, end, 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
     }
 
     public static boolean verify(String rawPassword, String stored) {
@@ -48,19 +91,16 @@ public class PasswordEncrypter {
         } catch (IllegalArgumentException e) {
             return false;
         }
+        if (iterations < 1 || expected.length == 0) return false;
         byte[] actual = pbkdf2(rawPassword.toCharArray(), salt, iterations, expected.length * 8);
         return constantTimeEquals(expected, actual);
     }
 
     private static byte[] pbkdf2(char[] password, byte[] salt, int iterations, int keyLengthBits) {
-        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, keyLengthBits);
         try {
-            SecretKeyFactory skf = SecretKeyFactory.getInstance(ALGORITHM);
-            return skf.generateSecret(spec).getEncoded();
-        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
-            throw new IllegalStateException("Password hashing failure", e);
+            return Pbkdf2Sha256.derive(password, salt, iterations, keyLengthBits);
         } finally {
-            spec.clearPassword();
+            Arrays.fill(password, '\0');
         }
     }
 
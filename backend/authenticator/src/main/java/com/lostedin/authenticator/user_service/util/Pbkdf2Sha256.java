@@ -0,0 +1,203 @@
+package com.lostedin.authenticator.user_service.util;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * PBKDF2-HMAC-SHA256 (RFC 8018) producing exactly what {@code SecretKeyFactory "PBKDF2WithHmacSHA256"} does,
+ * including its UTF-8 encoding of the password.
+ * <p>
+ * HMAC is computed over SHA-256 directly: the ipad and opad blocks are compressed once per password and their
+ * 8-word states copied for every iteration, so an iteration is two compression-function calls on int arrays,
+ * with the running XOR kept in an int array as well. Nothing is allocated inside the iteration loop.
+ */
+final class Pbkdf2Sha256 {
+
+    private static final int BLOCK_BYTES = 64;
+    private static final int DIGEST_WORDS = 8;
+    // An iteration hashes 32 bytes after a 64-byte pad block: 96 bytes = 768 bits in the length field
+    private static final int ITERATION_MESSAGE_BITS = (BLOCK_BYTES + 32) * 8;
+
+    private static final int[] IV = {
+            0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+    private static final int[] K = {
+            0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+            0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+            0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+            0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+            0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+            0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    private Pbkdf2Sha256() {
+    }
+
+    static byte[] derive(char[] password, byte[] salt, int iterations, int keyLengthBits) {
+        if (iterations < 1) throw new IllegalArgumentException("iterations must be > 0");
+        if (keyLengthBits <= 0 || keyLengthBits % 8 != 0) throw new IllegalArgumentException("key length must be a positive multiple of 8");
+        int keyLength = keyLengthBits / 8;
+
+        byte[] key = utf8(password);
+        int[] w = new int[64];
+        int[] block = new int[16];
+        int[] innerPad = new int[DIGEST_WORDS];
+        int[] outerPad = new int[DIGEST_WORDS];
+        try {
+            if (key.length > BLOCK_BYTES) {
+                byte[] hashed = digestBytes(key, w);
+                Arrays.fill(key, (byte) 0);
+                key = hashed;
+            }
+            padState(key, 0x36, innerPad, block, w);
+            padState(key, 0x5c, outerPad, block, w);
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
+
+        byte[] out = new byte[keyLength];
+        int[] u = new int[DIGEST_WORDS];
+        int[] accumulated = new int[DIGEST_WORDS];
+        int blocks = (keyLength + 31) / 32;
+        for (int index = 1; index <= blocks; index++) {
+            // U1 = HMAC(P, S || INT(index))
+            firstIteration(innerPad, outerPad, salt, index, u, block, w);
+            System.arraycopy(u, 0, accumulated, 0, DIGEST_WORDS);
+            // U2..Uc = HMAC(P, U(j-1)); both the inner and outer message are exactly one 32-byte block
+            for (int j = 1; j < iterations; j++) {
+                hmacOfDigest(innerPad, u, block, w);
+                hmacOfDigest(outerPad, u, block, w);
+                for (int k = 0; k < DIGEST_WORDS; k++) accumulated[k] ^= u[k];
+            }
+            int offset = (index - 1) * 32;
+            for (int k = 0; k < DIGEST_WORDS && offset + k * 4 < keyLength; k++) {
+                int word = accumulated[k];
+                for (int b = 0; b < 4 && offset + k * 4 + b < keyLength; b++) {
+                    out[offset + k * 4 + b] = (byte) (word >>> (24 - 8 * b));
+                }
+            }
+        }
+        Arrays.fill(accumulated, 0);
+        Arrays.fill(u, 0);
+        Arrays.fill(innerPad, 0);
+        Arrays.fill(outerPad, 0);
+        return out;
+    }
+
+    // state := SHA-256 state after compressing (key ^ pad), the first block of an HMAC input
+    private static void padState(byte[] key, int pad, int[] state, int[] block, int[] w) {
+        for (int i = 0; i < 16; i++) {
+            int word = 0;
+            for (int b = 0; b < 4; b++) {
+                int index = i * 4 + b;
+                int keyByte = index < key.length ? key[index] & 0xFF : 0;
+                word = (word << 8) | ((keyByte ^ pad) & 0xFF);
+            }
+            block[i] = word;
+        }
+        System.arraycopy(IV, 0, state, 0, DIGEST_WORDS);
+        compress(state, block, w);
+        Arrays.fill(block, 0);
+    }
+
+    /**
+     * digest := compress(padState, digest || padding); used for both HMAC halves, since the inner digest and
+     * every U are 32 bytes.
+     */
+    private static void hmacOfDigest(int[] padState, int[] digest, int[] block, int[] w) {
+        System.arraycopy(digest, 0, block, 0, DIGEST_WORDS);
+        block[8] = 0x80000000;
+        for (int i = 9; i < 15; i++) block[i] = 0;
+        block[15] = ITERATION_MESSAGE_BITS;
+        System.arraycopy(padState, 0, digest, 0, DIGEST_WORDS);
+        compress(digest, block, w);
+    }
+
+    private static void firstIteration(int[] innerPad, int[] outerPad, byte[] salt, int index, int[] u, int[] block, int[] w) {
+        byte[] message = Arrays.copyOf(salt, salt.length + 4);
+        message[salt.length] = (byte) (index >>> 24);
+        message[salt.length + 1] = (byte) (index >>> 16);
+        message[salt.length + 2] = (byte) (index >>> 8);
+        message[salt.length + 3] = (byte) index;
+        System.arraycopy(innerPad, 0, u, 0, DIGEST_WORDS);
+        hashTail(u, message, BLOCK_BYTES, block, w);
+        hmacOfDigest(outerPad, u, block, w);
+    }
+
+    private static byte[] digestBytes(byte[] message, int[] w) {
+        int[] state = IV.clone();
+        hashTail(state, message, 0, new int[16], w);
+        ByteBuffer out = ByteBuffer.allocate(32);
+        for (int word : state) out.putInt(word);
+        return out.array();
+    }
+
+    /** Continues a SHA-256 whose first {@code prefixBytes} bytes are already in {@code state}, then pads and finishes */
+    private static void hashTail(int[] state, byte[] message, long prefixBytes, int[] block, int[] w) {
+        long totalBits = (prefixBytes + message.length) * 8;
+        int paddedLength = ((message.length + 8) / BLOCK_BYTES + 1) * BLOCK_BYTES;
+        byte[] padded = Arrays.copyOf(message, paddedLength);
+        padded[message.length] = (byte) 0x80;
+        for (int i = 0; i < 8; i++) padded[paddedLength - 1 - i] = (byte) (totalBits >>> (8 * i));
+        for (int offset = 0; offset < paddedLength; offset += BLOCK_BYTES) {
+            for (int i = 0; i < 16; i++) {
+                int p = offset + i * 4;
+                block[i] = ((padded[p] & 0xFF) << 24) | ((padded[p + 1] & 0xFF) << 16)
+                        | ((padded[p + 2] & 0xFF) << 8) | (padded[p + 3] & 0xFF);
+            }
+            compress(state, block, w);
+        }
+    }
+
+    // FIPS 180-4 SHA-256 compression function
+    private static void compress(int[] state, int[] block, int[] w) {
+        System.arraycopy(block, 0, w, 0, 16);
+        for (int t = 16; t < 64; t++) {
+            int w15 = w[t - 15];
+            int w2 = w[t - 2];
+            int s0 = Integer.rotateRight(w15, 7) ^ Integer.rotateRight(w15, 18) ^ (w15 >>> 3);
+            int s1 = Integer.rotateRight(w2, 17) ^ Integer.rotateRight(w2, 19) ^ (w2 >>> 10);
+            w[t] = w[t - 16] + s0 + w[t - 7] + s1;
+        }
+        int a = state[0], b = state[1], c = state[2], d = state[3];
+        int e = state[4], f = state[5], g = state[6], h = state[7];
+        for (int t = 0; t < 64; t++) {
+            int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+            int ch = (e & f) ^ (~e & g);
+            int t1 = h + s1 + ch + K[t] + w[t];
+            int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+            int maj = (a & b) ^ (a & c) ^ (b & c);
+            int t2 = s0 + maj;
+            h = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+        state[4] += e;
+        state[5] += f;
+        state[6] += g;
+        state[7] += h;
+    }
+
+    // Same encoding as the JDK's PBKDF2 key: UTF-8, unpaired surrogates replaced
+    private static byte[] utf8(char[] password) {
+        ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+        byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        if (encoded.hasArray()) Arrays.fill(encoded.array(), (byte) 0);
+        return bytes;
+    }
+}
@@ -0,0 +1,99 @@
+package com.lostedin.authenticator.user_service.util;
+
+import com.google.zxing.common.BitMatrix;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a {@link BitMatrix} as a 1-bit palettized PNG directly: one bit per pixel, rows packed MSB first,
+ * filter type 0, deflated with {@link Deflater}. No {@code BufferedImage}, no ImageIO and no AWT, and the
+ * raw image is 1/32 of an ARGB raster.
+ */
+final class QrPngEncoder {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    // index 0 = white (unset module), index 1 = black (set module)
+    private static final byte[] PALETTE = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0, 0, 0};
+
+    private QrPngEncoder() {
+    }
+
+    static byte[] encode(BitMatrix matrix) {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        int rowBytes = (width + 7) / 8;
+
+        byte[] raw = new byte[(rowBytes + 1) * height];
+        int pos = 0;
+        for (int y = 0; y < height; y++) {
+            raw[pos++] = 0; // filter: none
+            for (int x = 0; x < width; x += 8) {
+                int packed = 0;
+                for (int bit = 0; bit < 8; bit++) {
+                    packed <<= 1;
+                    if (x + bit < width && matrix.get(x + bit, y)) packed |= 1;
+                }
+                raw[pos++] = (byte) packed;
+            }
+        }
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream(raw.length / 4 + 128);
+        png.writeBytes(SIGNATURE);
+
+        byte[] header = new byte[13];
+        writeInt(header, 0, width);
+        writeInt(header, 4, height);
+        header[8] = 1;  // bit depth
+        header[9] = 3;  // colour type: palette
+        header[10] = 0; // compression: deflate
+        header[11] = 0; // filter method
+        header[12] = 0; // no interlace
+        writeChunk(png, "IHDR", header, header.length);
+        writeChunk(png, "PLTE", PALETTE, PALETTE.length);
+
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] compressed = new byte[raw.length + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            writeChunk(png, "IDAT", compressed, length);
+        } finally {
+            deflater.end();
+        }
+
+        writeChunk(png, "IEND", new byte[0], 0);
+        return png.toByteArray();
+    }
+
+    private static void writeChunk(ByteArrayOutputStream out, String type, byte[] data, int length) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        byte[] lengthBytes = new byte[4];
+        writeInt(lengthBytes, 0, length);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        byte[] crcBytes = new byte[4];
+        writeInt(crcBytes, 0, (int) crc.getValue());
+
+        out.writeBytes(lengthBytes);
+        out.writeBytes(typeBytes);
+        out.write(data, 0, length);
+        out.writeBytes(crcBytes);
+    }
+
+    private static void writeInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+}
@@ -10,8 +10,6 @@ import com.google.zxing.common.BitMatrix;
 import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
 
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.EnumMap;
 import java.util.Map;
@@ -20,17 +18,40 @@ public class QrUtil {
 
     /**
      * Generate a QR code PNG as bytes from the given content.
+     * Written as a 1-bit palette PNG straight from the matrix, without going through BufferedImage/ImageIO.
      * @param content text/URI to encode
      * @param size square size in pixels (min 64, max 2048)
      */
     public static byte[] generatePng(String content, int size) {
-        BufferedImage image = generateImage(content, size);
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            javax.imageio.ImageIO.write(image, "PNG", out);
-            return out.toByteArray();
-        } catch (IOException e) {
-            throw new IllegalStateException("Failed to encode QR PNG", e);
+        return QrPngEncoder.encode(encode(content, size));
+    }
+
+    /**
+     * Generate a QR code SVG from the given content: one path of horizontal module runs on a module-sized
+     * viewBox, scaled to {@code size} pixels by the browser.
+     */
+    public static String generateSvg(String content, int size) {
+        BitMatrix matrix = encodeModules(content);
+        int s = clampSize(size);
+        int n = matrix.getWidth();
+        StringBuilder svg = new StringBuilder(4096)
+                .append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(s)
+                .append("\" height=\"").append(s)
+                .append("\" viewBox=\"0 0 ").append(n).append(' ').append(n)
+                .append("\" shape-rendering=\"crispEdges\"><rect width=\"100%\" height=\"100%\" fill=\"#fff\"/><path fill=\"#000\" d=\"");
+        for (int y = 0; y < matrix.getHeight(); y++) {
+            int x = 0;
+            while (x < n) {
+                if (!matrix.get(x, y)) {
+                    x++;
+                    continue;
+                }
+                int start = x;
+                while (x < n && matrix.get(x, y)) x++;
+                svg.append('M').append(start).append(' ').append(y).append('h').append(x - start).append("v1h-").append(x - start).append('z');
+            }
         }
+        return svg.append("\"/></svg>").toString();
     }
 
     /**
@@ -46,16 +67,29 @@ public class QrUtil {
      * Encode content into a BitMatrix using ZXing with sensible defaults.
      */
     public static BitMatrix encode(String content, int size) {
+        int s = clampSize(size);
+        return encode(content, s, s);
+    }
+
+    // One pixel per module (plus margin): ZXing never renders smaller than the symbol itself
+    private static BitMatrix encodeModules(String content) {
+        return encode(content, 0, 0);
+    }
+
+    private static int clampSize(int size) {
+        return Math.max(64, Math.min(2048, size <= 0 ? 256 : size));
+    }
+
+    private static BitMatrix encode(String content, int width, int height) {
         if (content == null || content.trim().isEmpty()) {
             throw new IllegalArgumentException("content must not be empty");
         }
-        int s = Math.max(64, Math.min(2048, size <= 0 ? 256 : size));
         Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
         hints.put(EncodeHintType.CHARACTER_SET, StandardCharsets.UTF_8.name());
         hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M);
         hints.put(EncodeHintType.MARGIN, 1);
         try {
-            return new MultiFormatWriter().encode(content, BarcodeFormat.QR_CODE, s, s, hints);
+            return new MultiFormatWriter().encode(content, BarcodeFormat.QR_CODE, width, height, hints);
         } catch (WriterException e) {
             throw new IllegalStateException("Failed to generate QR matrix", e);
         }
@@ -0,0 +1,25 @@
+package com.lostedin.authenticator.user_service.util;
+
+/**
+ * Fast 64-bit string hash for in-memory tables keyed by user input (username filter, login throttle).
+ * FNV-1a over the chars starting from a seed, followed by the MurmurHash3 64-bit finalizer so every input bit
+ * reaches the high and low bits alike. With a random per-process seed, colliding keys cannot be chosen in advance.
+ * Not a cryptographic hash.
+ */
+public final class SeededHash {
+
+    private SeededHash() {}
+
+    public static long hash(String key, long seed) {
+        long h = seed ^ 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,5 @@
+-- Run by Hibernate after it creates the schema (spring.jpa.hibernate.ddl-auto=create).
+-- With ddl-auto=update or a managed schema, apply these by hand.
+
+-- Usernames are unique regardless of case; UserRepo looks users up by lower(username) through this index
+CREATE UNIQUE INDEX IF NOT EXISTS ux_users_username_lower ON users (lower(username));
@@ -0,0 +1,96 @@
+package com.lostedin.authenticator.auth_service.api;
+
+import com.lostedin.authenticator.user_service.service.KdfExecutionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * With the in-process transport a full KDF queue has to reach the client as 503 + Retry-After, not as requests
+ * waiting on the task executor. Runs against the database from application.yml, like
+ * {@code AuthenticatorApplicationTests}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "user-api.transport=in-process",
+        "kdf.pool-size=1",
+        "kdf.queue-capacity=1",
+        "kdf.retry-after-seconds=2",
+        "login.throttle.enabled=false"
+})
+class KdfOverloadTest {
+
+    @Autowired
+    private KdfExecutionService kdf;
+    @Value("${local.server.port}")
+    private int port;
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+    @Test
+    void loginsAndSignupsAreRejectedWith503WhileThePoolIsSaturated() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // one task on the only KDF thread, one in the only queue slot
+        CompletableFuture<Boolean> running = kdf.submit(() -> {
+            started.countDown();
+            return await(release);
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> queued = kdf.submit(() -> await(release));
+        try {
+            String body = "{\"username\":\"overload-" + UUID.randomUUID() + "\",\"password\":\"overload-password\"}";
+            for (String path : new String[]{"/auth/authorize", "/auth/register"}) {
+                HttpResponse<String> response = post(path, body);
+                assertEquals(503, response.statusCode(), path + ": " + response.body());
+                assertEquals("2", response.headers().firstValue("Retry-After").orElse(null), path);
+            }
+        } finally {
+            release.countDown();
+        }
+        assertTrue(running.get(10, TimeUnit.SECONDS));
+        assertTrue(queued.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void stagesChainedOnAHashNeverRunOnAKdfThread() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        // registered while the hash is still running, so the stage runs on whichever thread completes the future
+        CompletableFuture<String> stageThread = kdf.submit(() -> await(release))
+                .thenApply(ignored -> Thread.currentThread().getName());
+        release.countDown();
+
+        String thread = stageThread.get(10, TimeUnit.SECONDS);
+        assertFalse(thread.startsWith("kdf-"), thread);
+    }
+
+    private HttpResponse<String> post(String path, String json) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.lostedin.authenticator.auth_service.repo;
+
+import com.lostedin.authenticator.auth_service.dto.TokenDto;
+import com.lostedin.authenticator.auth_service.service.SessionPurgeJob;
+import com.lostedin.authenticator.auth_service.service.SessionService;
+import com.lostedin.authenticator.user_service.dto.ResponseDto;
+import com.lostedin.authenticator.user_service.dto.SignUpDto;
+import com.lostedin.authenticator.user_service.dto.UserDataDto;
+import com.lostedin.authenticator.user_service.model.User;
+import com.lostedin.authenticator.user_service.model.UserCredentials;
+import com.lostedin.authenticator.user_service.repo.TokenEpochStore;
+import com.lostedin.authenticator.user_service.repo.UserCredentialsRepo;
+import com.lostedin.authenticator.user_service.repo.UserRepo;
+import com.lostedin.authenticator.user_service.service.UserService;
+import com.lostedin.authenticator.user_service.util.PasswordEncrypter;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Session and revocation writes, and a login's background rehash, must not clear second-level cache entries
+ * of other users (see {@code HibernateCacheConfig}). Runs against the database from application.yml, like
+ * {@code AuthenticatorApplicationTests}.
+ */
+@SpringBootTest
+class BulkQueryCacheIsolationTest {
+
+    private static final String PASSWORD = "cache-isolation-password";
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private SessionService sessionService;
+    @Autowired
+    private SessionPurgeJob sessionPurgeJob;
+    @Autowired
+    private TokenEpochStore tokenEpochStore;
+    @Autowired
+    private UserRepo userRepo;
+    @Autowired
+    private UserCredentialsRepo credentialsRepo;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Cache cache;
+    private UUID bystander;
+    private UUID actor;
+
+    @BeforeEach
+    void setUp() {
+        cache = entityManagerFactory.getCache();
+        bystander = signUp();
+        actor = signUp();
+        userRepo.findById(bystander);
+        credentialsRepo.findById(bystander);
+        assertBystanderCached();
+    }
+
+    @Test
+    void logoutLeavesOtherUsersCached() {
+        TokenDto session = sessionService.createSession(actor);
+        assertEquals(201, session.getStatus());
+
+        assertEquals(200, sessionService.deleteSession(session.getRefresh_token()).getStatus());
+        assertBystanderCached();
+
+        sessionService.createSession(actor);
+        assertEquals(200, sessionService.revokeAllSessions(actor).getStatus());
+        assertBystanderCached();
+    }
+
+    @Test
+    void purgesLeaveOtherUsersCached() {
+        sessionPurgeJob.purgeExpiredSessions();
+        tokenEpochStore.purge();
+
+        assertBystanderCached();
+    }
+
+    @Test
+    void rehashLeavesOtherUsersCachedAndUpdatesOnlyItsOwnEntry() {
+        String oldHash = credentialsRepo.findById(actor).orElseThrow().getPassword();
+        String newHash = PasswordEncrypter.hash(PASSWORD, PasswordEncrypter.getIterations() + 1000);
+
+        assertEquals(1, credentialsRepo.updatePasswordIfUnchanged(actor, oldHash, newHash));
+        assertEquals(0, credentialsRepo.updatePasswordIfUnchanged(actor, oldHash, newHash), "stale old hash");
+
+        assertBystanderCached();
+        assertEquals(newHash, credentialsRepo.findById(actor).orElseThrow().getPassword());
+        assertEquals(200, userService.validateUser(usernameOf(actor), PASSWORD, "127.0.0.1").getStatus());
+    }
+
+    private void assertBystanderCached() {
+        assertTrue(cache.contains(User.class, bystander), "users entry evicted");
+        assertTrue(cache.contains(UserCredentials.class, bystander), "user-credentials entry evicted");
+    }
+
+    private String usernameOf(UUID userId) {
+        return ((UserDataDto) userService.getUser(userId)).getUsername();
+    }
+
+    private UUID signUp() {
+        SignUpDto signUp = new SignUpDto();
+        signUp.setUsername("cache-isolation-" + UUID.randomUUID());
+        signUp.setPassword(PASSWORD);
+        ResponseDto created = userService.createUser(signUp);
+        assertEquals(201, created.getStatus());
+        return ((UserDataDto) created).getId();
+    }
+}
@@ -0,0 +1,204 @@
+package com.lostedin.authenticator.user_service.model.token;
+
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Differential test: whatever the fast path decides has to match what JJWT decides for the same token,
+ * and the tokens JwtUtil actually issues must be handled by the fast path rather than falling back.
+ */
+class HmacJwtFastVerifierTest {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    // 256, 424 (dev secret length) and 512 bits -> HS256, HS384, HS512
+    private static final int[] KEY_BYTES = {32, 53, 64};
+
+    @Test
+    void issuedTokensTakeTheFastPathAndMatchJjwt() {
+        for (int keyBytes : KEY_BYTES) {
+            SecretKey key = randomKey(keyBytes);
+            HmacJwtFastVerifier verifier = new HmacJwtFastVerifier(key);
+            JwtParser parser = Jwts.parser().verifyWith(key).build();
+            for (int i = 0; i < 200; i++) {
+                UUID subject = UUID.randomUUID();
+                String token = issue(key, subject, Instant.now(), 900);
+
+                VerifiedTokenCache.Entry entry = verifier.verify(token, System.currentTimeMillis());
+                assertNotNull(entry, "fast path fell back for an issued token");
+                assertNotSame(HmacJwtFastVerifier.REJECTED, entry);
+                assertEquals(subject, entry.subject());
+                assertEquals(jjwt(parser, token), Optional.of(entry.subject()));
+            }
+        }
+    }
+
+    @Test
+    void everySingleCharacterChangeAgreesWithJjwt() {
+        for (int keyBytes : KEY_BYTES) {
+            SecretKey key = randomKey(keyBytes);
+            HmacJwtFastVerifier verifier = new HmacJwtFastVerifier(key);
+            JwtParser parser = Jwts.parser().verifyWith(key).build();
+            String token = issue(key, UUID.randomUUID(), Instant.now(), 900);
+            char[] replacements = {'A', 'B', '_', '-', '0', '.', '=', '+'};
+            for (int i = 0; i < token.length(); i++) {
+                for (char replacement : replacements) {
+                    if (token.charAt(i) == replacement) continue;
+                    String tampered = token.substring(0, i) + replacement + token.substring(i + 1);
+                    assertAgrees(verifier, parser, tampered);
+                }
+            }
+        }
+    }
+
+    @Test
+    void expiredTokensAreRejected() {
+        SecretKey key = randomKey(53);
+        HmacJwtFastVerifier verifier = new HmacJwtFastVerifier(key);
+        JwtParser parser = Jwts.parser().verifyWith(key).build();
+        String token = issue(key, UUID.randomUUID(), Instant.now().minusSeconds(3600), 900);
+
+        assertSame(HmacJwtFastVerifier.REJECTED, verifier.verify(token, System.currentTimeMillis()));
+        assertEquals(Optional.empty(), jjwt(parser, token));
+    }
+
+    @Test
+    void tokensSignedWithAnotherKeyAreRejected() {
+        SecretKey key = randomKey(53);
+        HmacJwtFastVerifier verifier = new HmacJwtFastVerifier(key);
+        JwtParser parser = Jwts.parser().verifyWith(key).build();
+        String token = issue(randomKey(53), UUID.randomUUID(), Instant.now(), 900);
+
+        assertSame(HmacJwtFastVerifier.REJECTED, verifier.verify(token, System.currentTimeMillis()));
+        assertEquals(Optional.empty(), jjwt(parser, token));
+    }
+
+    @Test
+    void unexpectedShapesFallBackToJjwt() {
+        SecretKey key = randomKey(53);
+        HmacJwtFastVerifier verifier = new HmacJwtFastVerifier(key);
+        JwtParser parser = Jwts.parser().verifyWith(key).build();
+        Instant now = Instant.now();
+        UUID subject = UUID.randomUUID();
+
+        String withJti = Jwts.builder()
+                .subject(subject.toString())
+                .id(UUID.randomUUID().toString())
+                .issuedAt(Date.from(now))
+                .expiration(Date.from(now.plusSeconds(900)))
+                .signWith(key)
+                .compact();
+        String otherAlgorithm = Jwts.builder()
+                .subject(subject.toString())
+                .issuedAt(Date.from(now))
+                .expiration(Date.from(now.plusSeconds(900)))
+                .signWith(key, Jwts.SIG.HS256)
+                .compact();
+        String withTyp = Jwts.builder()
+                .header().type("JWT").and()
+                .subject(subject.toString())
+                .issuedAt(Date.from(now))
+                .expiration(Date.from(now.plusSeconds(900)))
+                .signWith(key)
+                .compact();
+
+        for (String token : new String[]{withJti, otherAlgorithm, withTyp}) {
+            assertNull(verifier.verify(token, System.currentTimeMillis()));
+            assertEquals(Optional.of(subject), jjwt(parser, token));
+        }
+    }
+
+    @Test
+    void handWrittenPayloadsAgreeWithJjwt() {
+        SecretKey key = randomKey(53);
+        HmacJwtFastVerifier verifier = new HmacJwtFastVerifier(key);
+        JwtParser parser = Jwts.parser().verifyWith(key).build();
+        long iat = Instant.now().getEpochSecond();
+        long exp = iat + 900;
+        String sub = UUID.randomUUID().toString();
+        String[] payloads = {
+                "{\"sub\":\"" + sub + "\",\"iat\":" + iat + ",\"exp\":" + exp + "}",
+                "{ \"exp\" : " + exp + " , \"sub\" : \"" + sub + "\" , \"iat\" : " + iat + " }",
+                "{\"sub\":\"" + sub.toUpperCase() + "\",\"iat\":" + iat + ",\"exp\":" + exp + "}",
+                "{\"sub\":\"" + sub + "\",\"iat\":" + iat + ",\"exp\":0" + exp + "}",
+                "{\"sub\":\"" + sub + "\",\"iat\":" + iat + ",\"exp\":" + exp + ".5}",
+                "{\"sub\":\"" + sub + "\",\"iat\":" + iat + ",\"exp\":" + exp + ",\"exp\":" + exp + "}",
+                "{\"sub\":\"" + sub + "\",\"iat\":" + iat + "}",
+                "{\"sub\":\"not-a-uuid\",\"iat\":" + iat + ",\"exp\":" + exp + "}",
+                "{\"sub\":\"" + sub + "\",\"iat\":" + iat + ",\"exp\":" + exp + "}x",
+                "{}",
+                "[]",
+        };
+        for (String payload : payloads) {
+            assertAgrees(verifier, parser, sign(key, "{\"alg\":\"HS384\"}", payload));
+        }
+    }
+
+    @Test
+    void garbageAgreesWithJjwt() {
+        SecretKey key = randomKey(53);
+        HmacJwtFastVerifier verifier = new HmacJwtFastVerifier(key);
+        JwtParser parser = Jwts.parser().verifyWith(key).build();
+        String[] tokens = {"", ".", "..", "a.b.c", "eyJhbGciOiJIUzM4NCJ9..", "eyJhbGciOiJIUzM4NCJ9.e30.", "x".repeat(4096)};
+        for (String token : tokens) {
+            assertAgrees(verifier, parser, token);
+        }
+    }
+
+    private static void assertAgrees(HmacJwtFastVerifier verifier, JwtParser parser, String token) {
+        Optional<UUID> expected = jjwt(parser, token);
+        VerifiedTokenCache.Entry entry = verifier.verify(token, System.currentTimeMillis());
+        if (entry == null) return; // fell back, JJWT decides by construction
+        Optional<UUID> actual = entry == HmacJwtFastVerifier.REJECTED ? Optional.empty() : Optional.of(entry.subject());
+        assertEquals(expected, actual, () -> "disagreement on " + token);
+    }
+
+    private static Optional<UUID> jjwt(JwtParser parser, String token) {
+        try {
+            return Optional.of(UUID.fromString(parser.parseSignedClaims(token).getPayload().getSubject()));
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static String issue(SecretKey key, UUID subject, Instant issuedAt, long ttlSeconds) {
+        return Jwts.builder()
+                .subject(subject.toString())
+                .issuedAt(Date.from(issuedAt))
+                .expiration(Date.from(issuedAt.plusSeconds(ttlSeconds)))
+                .signWith(key)
+                .compact();
+    }
+
+    private static String sign(SecretKey key, String header, String payload) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String signingInput = encoder.encodeToString(header.getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        try {
+            javax.crypto.Mac mac = javax.crypto.Mac.getInstance("HmacSHA384");
+            mac.init(key);
+            return signingInput + "." + encoder.encodeToString(mac.doFinal(signingInput.getBytes(StandardCharsets.US_ASCII)));
+        } catch (java.security.GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static SecretKey randomKey(int bytes) {
+        byte[] key = new byte[bytes];
+        RANDOM.nextBytes(key);
+        return Keys.hmacShaKeyFor(key);
+    }
+}
@@ -0,0 +1,125 @@
+package com.lostedin.authenticator.user_service.model.token;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenEpochMapTest {
+
+    private static final long TTL = 900;
+    private static final long NOW = 1_800_000_000L;
+
+    @Test
+    void tokensIssuedBeforeTheEpochAreRevoked() {
+        TokenEpochMap map = new TokenEpochMap(16, TTL);
+        UUID userId = UUID.randomUUID();
+        map.raise(userId, NOW, NOW);
+
+        assertTrue(map.isRevoked(userId, NOW - 1, NOW));
+        assertTrue(map.isRevoked(userId, 0, NOW), "a token without iat counts as issued at 0");
+        assertFalse(map.isRevoked(userId, NOW, NOW), "tokens from the revocation second onwards stay valid");
+        assertFalse(map.isRevoked(userId, NOW + 5, NOW + 5));
+        assertFalse(map.isRevoked(UUID.randomUUID(), NOW - 1, NOW), "users are independent");
+    }
+
+    @Test
+    void epochsOnlyMoveForward() {
+        TokenEpochMap map = new TokenEpochMap(16, TTL);
+        UUID userId = UUID.randomUUID();
+        map.raise(userId, NOW, NOW);
+        map.raise(userId, NOW - 100, NOW);
+        assertEquals(NOW, map.notBefore(userId, NOW));
+
+        map.raise(userId, NOW + 10, NOW + 10);
+        assertEquals(NOW + 10, map.notBefore(userId, NOW + 10));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void entriesExpireAfterOneAccessTokenLifetime() {
+        TokenEpochMap map = new TokenEpochMap(16, TTL);
+        UUID userId = UUID.randomUUID();
+        map.raise(userId, NOW, NOW);
+
+        assertTrue(map.isRevoked(userId, NOW - 1, NOW + TTL - 1));
+        assertEquals(0, map.notBefore(userId, NOW + TTL));
+        assertEquals(1, map.purge(NOW + TTL));
+        assertEquals(0, map.size());
+
+        map.raise(UUID.randomUUID(), NOW - TTL, NOW);
+        assertEquals(0, map.size(), "epochs that are already dead are not stored");
+    }
+
+    @Test
+    void growsAndKeepsEveryEntry() {
+        TokenEpochMap map = new TokenEpochMap(16, TTL);
+        List<UUID> users = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            UUID userId = UUID.randomUUID();
+            users.add(userId);
+            map.raise(userId, NOW + (i % 7), NOW);
+        }
+
+        assertEquals(100_000, map.size());
+        assertTrue(map.capacity() <= 4 * 100_000, "capacity " + map.capacity());
+        for (int i = 0; i < users.size(); i++) {
+            assertEquals(NOW + (i % 7), map.notBefore(users.get(i), NOW), "user " + i);
+        }
+    }
+
+    @Test
+    void deadEntriesAreDroppedInsteadOfGrowing() {
+        TokenEpochMap map = new TokenEpochMap(1024, TTL);
+        for (long round = 0; round < 50; round++) {
+            long now = NOW + round * TTL;
+            for (int i = 0; i < 500; i++) map.raise(UUID.randomUUID(), now, now);
+        }
+
+        assertTrue(map.capacity() <= 2048, "capacity " + map.capacity());
+    }
+
+    @Test
+    void readersNeverMissAnEntryWhileWritersResize() throws Exception {
+        TokenEpochMap map = new TokenEpochMap(16, TTL);
+        UUID[] stable = new UUID[1_000];
+        for (int i = 0; i < stable.length; i++) {
+            stable[i] = UUID.randomUUID();
+            map.raise(stable[i], NOW, NOW);
+        }
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> tasks = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                boolean writer = t < 2;
+                tasks.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 200_000; i++) {
+                        if (writer) {
+                            map.raise(UUID.randomUUID(), NOW, NOW);
+                        } else {
+                            UUID userId = stable[i % stable.length];
+                            assertEquals(NOW, map.notBefore(userId, NOW));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> task : tasks) task.get(60, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(stable.length + 2 * 200_000, map.size());
+    }
+}
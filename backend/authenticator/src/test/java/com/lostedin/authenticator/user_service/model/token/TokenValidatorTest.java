@@ -0,0 +1,53 @@
+package com.lostedin.authenticator.user_service.model.token;
+
+import com.lostedin.authenticator.auth_service.config.SigningProperties;
+import com.lostedin.authenticator.auth_service.model.token.JwtUtil;
+import com.lostedin.authenticator.auth_service.model.token.SigningKeyStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Refresh tokens are signed with the same key as access tokens; only their typ header tells them apart.
+ */
+class TokenValidatorTest {
+
+    private static final String SECRET = "bXktdmVyeS1sb25nLWRldi1zZWNyZXQta2V5LXNob3VsZC1iZS1iYXNlNjQtMzItYnl0ZXM=";
+
+    private final JwtUtil jwtUtil = new JwtUtil(SECRET, 900, 1209600, true, 1000, new SimpleMeterRegistry(),
+            new SigningKeyStore(new SigningProperties(), 900, 1209600), null);
+
+    @Test
+    void refreshTokensAreNotAcceptedAsAccessTokens() {
+        for (boolean cache : new boolean[]{false, true}) {
+            for (boolean fastVerifier : new boolean[]{false, true}) {
+                TokenValidator validator = new TokenValidator(SECRET, "HS", fastVerifier, cache, 1000,
+                        new SimpleMeterRegistry(), null, null);
+                UUID userId = UUID.randomUUID();
+                UUID sessionId = UUID.randomUUID();
+                String accessToken = jwtUtil.generateAccessToken(userId);
+                String refreshToken = jwtUtil.generateRefreshToken(sessionId);
+
+                assertEquals(Optional.of(userId), validator.validateAccessToken(accessToken));
+                assertEquals(Optional.empty(), validator.validateAccessToken(refreshToken));
+                assertEquals(Optional.empty(), validator.validateAccessToken(refreshToken), "not cached either");
+            }
+        }
+    }
+
+    @Test
+    void issuingServiceKeepsTheTwoApart() {
+        UUID userId = UUID.randomUUID();
+        UUID sessionId = UUID.randomUUID();
+        String accessToken = jwtUtil.generateAccessToken(userId);
+        String refreshToken = jwtUtil.generateRefreshToken(sessionId);
+
+        assertEquals(Optional.of(userId), jwtUtil.validateAccessToken(accessToken));
+        assertEquals(Optional.empty(), jwtUtil.validateAccessToken(refreshToken));
+        assertEquals(Optional.of(sessionId), jwtUtil.validateRefreshToken(refreshToken));
+    }
+}
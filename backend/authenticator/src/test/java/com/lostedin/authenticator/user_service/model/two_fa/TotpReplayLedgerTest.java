@@ -0,0 +1,87 @@
+package com.lostedin.authenticator.user_service.model.two_fa;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TotpReplayLedgerTest {
+
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 500;
+
+    private final TOTP totp = new TOTP();
+    private final TotpVerifier verifier = new TotpVerifier("HmacSHA1", 6, 30, 1);
+
+    @Test
+    void onlyOneOfManyConcurrentSubmissionsOfTheSameCodeSucceeds() throws Exception {
+        TotpReplayLedger ledger = new TotpReplayLedger(verifier, 100_000, new SimpleMeterRegistry());
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                UUID userId = UUID.randomUUID();
+                String secret = totp.generateSecret(20);
+                String code = totp.currentCode(secret);
+                CountDownLatch start = new CountDownLatch(1);
+                AtomicInteger accepted = new AtomicInteger();
+                List<Future<?>> submissions = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    submissions.add(pool.submit(() -> {
+                        start.await();
+                        long step = verifier.verifyStep(secret, code, System.currentTimeMillis() / 1000L);
+                        if (step >= 0 && ledger.tryAccept(userId, step)) accepted.incrementAndGet();
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> submission : submissions) submission.get(10, TimeUnit.SECONDS);
+                assertEquals(1, accepted.get(), "round " + round);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void earlierStepsAreRejectedOnceALaterOneWasAccepted() {
+        TotpReplayLedger ledger = new TotpReplayLedger(verifier, 100_000, new SimpleMeterRegistry());
+        UUID userId = UUID.randomUUID();
+        long current = System.currentTimeMillis() / 1000L / 30;
+
+        assertTrue(ledger.tryAccept(userId, current));
+        assertFalse(ledger.tryAccept(userId, current));
+        assertFalse(ledger.tryAccept(userId, current - 1));
+        assertTrue(ledger.tryAccept(userId, current + 1));
+        assertTrue(ledger.tryAccept(UUID.randomUUID(), current), "users are independent");
+    }
+
+    @Test
+    void memoryIsCapped() {
+        TotpReplayLedger ledger = new TotpReplayLedger(verifier, 6_400, new SimpleMeterRegistry());
+        long current = System.currentTimeMillis() / 1000L / 30;
+        for (int i = 0; i < 100_000; i++) ledger.tryAccept(UUID.randomUUID(), current);
+
+        assertTrue(ledger.size() <= 6_400, "size " + ledger.size());
+    }
+
+    @Test
+    void entriesOutsideTheWindowArePurged() {
+        TotpReplayLedger ledger = new TotpReplayLedger(verifier, 100_000, new SimpleMeterRegistry());
+        long current = System.currentTimeMillis() / 1000L / 30;
+        for (int i = 0; i < 10_000; i++) ledger.tryAccept(UUID.randomUUID(), current - 10);
+        for (int i = 0; i < 10_000; i++) ledger.tryAccept(UUID.randomUUID(), current);
+
+        // every stripe saw fresh writes after the stale ones, which purges the stale heads
+        assertTrue(ledger.size() <= 10_000 + 64, "size " + ledger.size());
+    }
+}
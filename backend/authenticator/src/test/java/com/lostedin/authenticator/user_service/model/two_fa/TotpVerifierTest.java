@@ -0,0 +1,108 @@
+package com.lostedin.authenticator.user_service.model.two_fa;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TotpVerifierTest {
+
+    private static final long NOW = 1_800_000_000L;
+
+    private static final byte[] KEY = "an arbitrary test key".getBytes(StandardCharsets.US_ASCII);
+
+    private final TotpVerifier verifier = new TotpVerifier("HmacSHA1", 6, 30, 1);
+
+    // RFC 6238 Appendix B: unix time, expected 8-digit code for SHA1, SHA256, SHA512
+    private static final Object[][] RFC_6238 = {
+            {59L, "94287082", "46119246", "90693936"},
+            {1111111109L, "07081804", "68084774", "25091201"},
+            {1111111111L, "14050471", "67062674", "99943326"},
+            {1234567890L, "89005924", "91819424", "93441116"},
+            {2000000000L, "69279037", "90698825", "38618901"},
+            {20000000000L, "65353130", "77737706", "47863826"},
+    };
+
+    @Test
+    void matchesRfc6238TestVectors() {
+        String[] algorithms = {"HmacSHA1", "HmacSHA256", "HmacSHA512"};
+        byte[][] seeds = {
+                ascii("12345678901234567890"),
+                ascii("12345678901234567890123456789012"),
+                ascii("1234567890123456789012345678901234567890123456789012345678901234")
+        };
+        for (int a = 0; a < algorithms.length; a++) {
+            TotpVerifier rfc = new TotpVerifier(algorithms[a], 8, 30, 0);
+            for (Object[] vector : RFC_6238) {
+                long time = (long) vector[0];
+                String code = (String) vector[a + 1];
+                assertEquals(time / 30, rfc.verifyStep(seeds[a], code, time), algorithms[a] + " at " + time);
+            }
+        }
+        // same secret in base32, as stored for users
+        TotpVerifier sha1 = new TotpVerifier("HmacSHA1", 8, 30, 0);
+        assertEquals(59 / 30, sha1.verifyStep("GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQ", "94287082", 59));
+        assertEquals(59 / 30, sha1.verifyStep("gezdgnbvgy3tqojqgezdgnbvgy3tqojq", "94287082", 59));
+    }
+
+    @Test
+    void acceptsOneStepEitherSideAndNothingFurther() throws Exception {
+        long current = NOW / 30;
+
+        assertEquals(current, verifier.verifyStep(KEY, hotp(KEY, current), NOW));
+        assertEquals(current - 1, verifier.verifyStep(KEY, hotp(KEY, current - 1), NOW));
+        assertEquals(current + 1, verifier.verifyStep(KEY, hotp(KEY, current + 1), NOW));
+        assertEquals(-1, verifier.verifyStep(KEY, hotp(KEY, current - 2), NOW));
+        assertEquals(-1, verifier.verifyStep(KEY, hotp(KEY, current + 2), NOW));
+
+        // one second earlier the clock is in the previous step, so the window shifts back by one
+        assertEquals(current, verifier.verifyStep(KEY, hotp(KEY, current), NOW - 1));
+        assertEquals(-1, verifier.verifyStep(KEY, hotp(KEY, current + 1), NOW - 1));
+        assertEquals(-1, new TotpVerifier("HmacSHA1", 6, 30, 0).verifyStep(KEY, hotp(KEY, current - 1), NOW));
+    }
+
+    @Test
+    void malformedCodesAreRejected() throws Exception {
+        String code = hotp(KEY, NOW / 30);
+
+        assertEquals(-1, verifier.verifyStep(KEY, null, NOW));
+        assertEquals(-1, verifier.verifyStep(KEY, "", NOW));
+        assertEquals(-1, verifier.verifyStep(KEY, code.substring(1), NOW), "too short");
+        assertEquals(-1, verifier.verifyStep(KEY, "0" + code, NOW), "too long");
+        assertEquals(-1, verifier.verifyStep(KEY, code + " ", NOW), "trailing space");
+        assertEquals(-1, verifier.verifyStep(KEY, "12a456", NOW));
+        assertEquals(-1, verifier.verifyStep(KEY, "-12345", NOW));
+        assertEquals(-1, verifier.verifyStep(KEY, "+12345", NOW));
+        assertEquals(-1, verifier.verifyStep(KEY, "\uFF11\uFF12\uFF13\uFF14\uFF15\uFF16", NOW), "non-ASCII digits");
+        assertEquals(NOW / 30, verifier.verifyStep(KEY, code, NOW));
+    }
+
+    @Test
+    void allZeroKeysAreRejected() throws Exception {
+        byte[] zero = new byte[20];
+        String code = hotp(zero, NOW / 30);
+
+        assertEquals(-1, verifier.verifyStep(zero, code, NOW));
+        assertEquals(-1, verifier.verifyStep("AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA", code, NOW));
+        assertEquals(-1, verifier.verifyStep(new byte[0], code, NOW));
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // RFC 4226 reference computation, independent of the verifier's buffers
+    private static String hotp(byte[] key, long step) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA1");
+        mac.init(new SecretKeySpec(key, "HmacSHA1"));
+        byte[] hash = mac.doFinal(ByteBuffer.allocate(8).putLong(step).array());
+        int offset = hash[hash.length - 1] & 0x0F;
+        int binary = ((hash[offset] & 0x7F) << 24) | ((hash[offset + 1] & 0xFF) << 16)
+                | ((hash[offset + 2] & 0xFF) << 8) | (hash[offset + 3] & 0xFF);
+        return String.format("%06d", binary % 1_000_000);
+    }
+}
@@ -0,0 +1,104 @@
+package com.lostedin.authenticator.user_service.repo;
+
+import com.lostedin.authenticator.user_service.model.two_fa.TOTP;
+import com.lostedin.authenticator.user_service.model.two_fa.TotpVerifier;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TotpSecretCacheTest {
+
+    private static final int VERIFIERS = 8;
+    private static final int VERIFICATIONS = 20_000;
+
+    private final TOTP totp = new TOTP();
+    private final TotpVerifier verifier = new TotpVerifier("HmacSHA1", 6, 30, 1);
+
+    @Test
+    void primingDuringVerificationNeverFailsAValidCode() throws Exception {
+        // every lookup is served by prime(), the repository is never asked
+        TotpSecretCache cache = new TotpSecretCache(null, totp, new SimpleMeterRegistry(), true, 1000, 600);
+        UUID userId = UUID.randomUUID();
+        String secret = totp.generateSecret(20);
+        UserCredentialsView user = new UserCredentialsView(userId, "prime-" + userId, "hash", true, secret);
+        cache.prime(user, cache.generation());
+
+        ExecutorService pool = Executors.newFixedThreadPool(VERIFIERS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean verifying = new AtomicBoolean(true);
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> verifiers = new ArrayList<>();
+        try {
+            Future<?> primer = pool.submit(() -> {
+                start.await();
+                while (verifying.get()) cache.prime(user, cache.generation()); // what every successful 2FA login does
+                return null;
+            });
+            for (int t = 0; t < VERIFIERS; t++) {
+                verifiers.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < VERIFICATIONS; i++) {
+                        String code = totp.currentCode(secret);
+                        byte[] key = cache.get(userId).orElseThrow().secret();
+                        if (verifier.verifyStep(key, code, System.currentTimeMillis() / 1000L) < 0) rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> task : verifiers) task.get(60, TimeUnit.SECONDS);
+            verifying.set(false);
+            primer.get(10, TimeUnit.SECONDS);
+        } finally {
+            verifying.set(false);
+            pool.shutdownNow();
+        }
+        assertEquals(0, rejected.get());
+    }
+
+    @Test
+    void readersGetCopiesThatInvalidationDoesNotTouch() {
+        TotpSecretCache cache = new TotpSecretCache(null, totp, new SimpleMeterRegistry(), true, 1000, 600);
+        UUID userId = UUID.randomUUID();
+        String secret = totp.generateSecret(20);
+        cache.prime(new UserCredentialsView(userId, "copy-" + userId, "hash", true, secret), cache.generation());
+        TotpSecretCache.TotpSecret first = cache.get(userId).orElseThrow();
+        TotpSecretCache.TotpSecret second = cache.get(userId).orElseThrow();
+        assertNotSame(first.secret(), second.secret());
+
+        first.wipe();
+        cache.invalidate(userId);
+
+        assertArrayEquals(totp.decodeSecret(secret), second.secret(), "a reader's copy stays intact");
+        assertTrue(verifier.verifyStep(second.secret(), totp.currentCode(secret), System.currentTimeMillis() / 1000L) >= 0);
+    }
+
+    @Test
+    void primeWithCredentialsReadBeforeAnInvalidateIsIgnored() {
+        TotpSecretCache cache = new TotpSecretCache(null, totp, new SimpleMeterRegistry(), true, 1000, 600);
+        UUID userId = UUID.randomUUID();
+        String newSecret = totp.generateSecret(20);
+        cache.prime(new UserCredentialsView(userId, "stale-" + userId, "hash", true, newSecret), cache.generation());
+
+        // a login read the old secret, then 2FA was re-enabled while the password was being hashed
+        long generationBeforeRead = cache.generation();
+        UserCredentialsView stale = new UserCredentialsView(userId, "stale-" + userId, "hash", true, totp.generateSecret(20));
+        cache.invalidate(userId);
+        cache.prime(new UserCredentialsView(userId, "stale-" + userId, "hash", true, newSecret), cache.generation());
+        cache.prime(stale, generationBeforeRead);
+
+        assertArrayEquals(totp.decodeSecret(newSecret), cache.get(userId).orElseThrow().secret());
+    }
+}
@@ -0,0 +1,79 @@
+package com.lostedin.authenticator.user_service.service;
+
+import com.lostedin.authenticator.user_service.dto.ResponseDto;
+import com.lostedin.authenticator.user_service.dto.SignUpDto;
+import com.lostedin.authenticator.user_service.repo.UserRepo;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against the database from application.yml, like {@code AuthenticatorApplicationTests}.
+ */
+@SpringBootTest
+class ConcurrentSignupTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserRepo userRepo;
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void concurrentSignupsForOneNameCreateExactlyOneUser() throws Exception {
+        String base = "signup-" + UUID.randomUUID();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<ResponseDto>> signups = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                // case variants must collide as well
+                String username = t % 2 == 0 ? base : base.toUpperCase(Locale.ROOT);
+                SignUpDto signUp = new SignUpDto();
+                signUp.setUsername(username);
+                signUp.setPassword("password-" + UUID.randomUUID());
+                signups.add(pool.submit(() -> {
+                    start.await();
+                    return userService.createUser(signUp);
+                }));
+            }
+            start.countDown();
+
+            int created = 0;
+            int conflicts = 0;
+            for (Future<ResponseDto> signup : signups) {
+                int status = signup.get(60, TimeUnit.SECONDS).getStatus();
+                if (status == 201) created++;
+                else if (status == 409) conflicts++;
+                else fail("unexpected status " + status);
+            }
+            assertEquals(1, created);
+            assertEquals(THREADS - 1, conflicts);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Number rows = (Number) entityManager
+                .createNativeQuery("select count(*) from users where lower(username) = lower(:username)")
+                .setParameter("username", base)
+                .getSingleResult();
+        assertEquals(1, rows.intValue());
+        assertTrue(userRepo.getByUsername(base.toUpperCase(Locale.ROOT)).isPresent());
+    }
+}
@@ -0,0 +1,124 @@
+package com.lostedin.authenticator.user_service.service;
+
+import com.lostedin.authenticator.user_service.exception.LoginThrottledException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginThrottleTest {
+
+    private static final long NOW = 1_000;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    // 16 slots = 4 sets of 4; set index from bits 2-3, tag from the top 24 bits
+    private static long hash(long tag, int set) {
+        return (tag << 40) | ((long) set << 2);
+    }
+
+    @Test
+    void burstUpToCapacityThenRejectedUntilOneIntervalHasPassed() {
+        LoginThrottle.BucketTable table = new LoginThrottle.BucketTable("test", 16, 3, 60, registry); // 1 token/s
+        long key = hash(1, 0);
+
+        assertEquals(0, table.tryAcquire(key, NOW));
+        assertEquals(0, table.tryAcquire(key, NOW));
+        assertEquals(0, table.tryAcquire(key, NOW));
+        assertEquals(1_000, table.tryAcquire(key, NOW), "ms until the next token");
+        assertEquals(400, table.tryAcquire(key, NOW + 600));
+
+        assertEquals(0, table.tryAcquire(key, NOW + 1_000), "one token refilled");
+        assertEquals(1_000, table.tryAcquire(key, NOW + 1_000));
+        assertEquals(3.0, registry.get("login.throttle.rejected").tag("key", "test").counter().count());
+    }
+
+    @Test
+    void retryAfterIsTheWaitRoundedUpToSeconds() {
+        // one attempt per 10 s per username, IPs effectively unlimited
+        LoginThrottle throttle = new LoginThrottle(registry, true, 16, 1, 6, 1_000, 60_000, "");
+        throttle.acquire("alice", "10.0.0.1");
+
+        LoginThrottledException e = assertThrows(LoginThrottledException.class, () -> throttle.acquire("alice", "10.0.0.1"));
+        assertEquals(10, e.getRetryAfterSeconds());
+    }
+
+    @Test
+    void usernamesDifferingOnlyInCaseShareABucket() {
+        LoginThrottle throttle = new LoginThrottle(registry, true, 1024, 2, 1, 1_000, 60_000, "");
+        throttle.acquire("Alice", "10.0.0.1");
+        throttle.acquire("ALICE", "10.0.0.2");
+
+        assertThrows(LoginThrottledException.class, () -> throttle.acquire("alice", "10.0.0.3"));
+        throttle.acquire("bob", "10.0.0.4");
+    }
+
+    @Test
+    void aNewKeyEvictsTheFullestBucketOfItsSet() {
+        LoginThrottle.BucketTable table = new LoginThrottle.BucketTable("test", 16, 3, 60, registry);
+        long fullest = hash(1, 2);
+        long half = hash(2, 2);
+        long drainedA = hash(3, 2);
+        long drainedB = hash(4, 2);
+        table.tryAcquire(fullest, NOW);
+        for (int i = 0; i < 2; i++) table.tryAcquire(half, NOW);
+        for (int i = 0; i < 3; i++) table.tryAcquire(drainedA, NOW);
+        for (int i = 0; i < 3; i++) table.tryAcquire(drainedB, NOW);
+
+        assertEquals(0, table.tryAcquire(hash(5, 2), NOW), "set is full, a slot is taken over");
+        assertEquals(1.0, registry.get("login.throttle.evicted").tag("key", "test").counter().count());
+
+        // the others kept their state
+        assertTrue(table.tryAcquire(drainedA, NOW) > 0);
+        assertTrue(table.tryAcquire(drainedB, NOW) > 0);
+        assertEquals(0, table.tryAcquire(half, NOW));
+        assertTrue(table.tryAcquire(half, NOW) > 0);
+    }
+
+    @Test
+    void concurrentAcquiresNeverGrantMoreThanCapacity() throws Exception {
+        int capacity = 100;
+        // refill so slow that no token comes back during the test
+        LoginThrottle.BucketTable table = new LoginThrottle.BucketTable("test", 16, capacity, 0.001, registry);
+        long key = hash(7, 1);
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger granted = new AtomicInteger();
+        List<Future<?>> tasks = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                tasks.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 1_000; i++) {
+                        if (table.tryAcquire(key, NOW) == 0) granted.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> task : tasks) task.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(capacity, granted.get());
+    }
+
+    @Test
+    void relayedClientIpIsOnlyBelievedFromTrustedCallers() {
+        LoginThrottle throttle = new LoginThrottle(registry, true, 16, 10, 5, 50, 60, "127.0.0.1");
+
+        assertEquals("203.0.113.7", throttle.clientIp("127.0.0.1", "203.0.113.7"));
+        assertEquals("198.51.100.1", throttle.clientIp("198.51.100.1", "203.0.113.7"));
+        assertEquals("127.0.0.1", throttle.clientIp("127.0.0.1", null));
+    }
+}
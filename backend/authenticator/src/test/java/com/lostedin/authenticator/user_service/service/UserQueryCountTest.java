@@ -0,0 +1,101 @@
+package com.lostedin.authenticator.user_service.service;
+
+import com.lostedin.authenticator.user_service.dto.ResponseDto;
+import com.lostedin.authenticator.user_service.dto.SignUpDto;
+import com.lostedin.authenticator.user_service.dto.UserDataDto;
+import com.lostedin.authenticator.user_service.dto.UserSettingsDto;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Each read path loads the user and its credentials with exactly one SQL statement, and repeats come from
+ * the second-level cache until a write invalidates them.
+ * Runs against the database from application.yml, like {@code AuthenticatorApplicationTests}.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class UserQueryCountTest {
+
+    private static final String PASSWORD = "query-count-password";
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserSettingsService userSettingsService;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private String username;
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        username = "query-count-" + UUID.randomUUID();
+        SignUpDto signUp = new SignUpDto();
+        signUp.setUsername(username);
+        signUp.setPassword(PASSWORD);
+        ResponseDto created = userService.createUser(signUp);
+        assertEquals(201, created.getStatus());
+        userId = ((UserDataDto) created).getId();
+        userSettingsService.enable_2fa(userId);
+        statistics.clear();
+    }
+
+    @Test
+    void getUserIsOneStatement() {
+        UserDataDto user = (UserDataDto) userService.getUser(userId);
+
+        assertEquals(username, user.getUsername());
+        assertTrue(user.getIs_2fa_enabled());
+        assertNotNull(user.getTotp_secret());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void validateUserIsOneStatement() {
+        ResponseDto response = userService.validateUser(username, PASSWORD, "127.0.0.1");
+
+        assertEquals(200, response.getStatus());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void repeatedReadsAreServedFromTheSecondLevelCache() {
+        userService.getUser(userId);
+        statistics.clear();
+
+        userService.getUser(userId);
+        userSettingsService.getUserSettings(userId);
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void settingsChangesInvalidateCachedReads() {
+        assertTrue(((UserDataDto) userService.getUser(userId)).getIs_2fa_enabled());
+
+        userSettingsService.disable_2fa(userId);
+
+        UserDataDto user = (UserDataDto) userService.getUser(userId);
+        assertFalse(user.getIs_2fa_enabled());
+        assertNull(user.getTotp_secret());
+    }
+
+    @Test
+    void getUserSettingsIsOneStatement() {
+        UserSettingsDto settings = userSettingsService.getUserSettings(userId);
+
+        assertEquals(username, settings.getUsername());
+        assertTrue(settings.getIs_2fa_enabled());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+}
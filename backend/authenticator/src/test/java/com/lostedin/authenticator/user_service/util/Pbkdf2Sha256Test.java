@@ -0,0 +1,78 @@
+package com.lostedin.authenticator.user_service.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Pbkdf2Sha256Test {
+
+    @Test
+    void rfc7914Vectors() {
+        // RFC 7914 section 11
+        assertVector("passwd", "salt", 1, 64,
+                "55ac046e56e3089fec1691c22544b605f94185216dde0465e68b9d57c20dacbc"
+                        + "49ca9cccf179b645991664b39d77ef317c71b845b1e30bd509112041d3a19783");
+        assertVector("Password", "NaCl", 80_000, 64,
+                "4ddcd8f60b98be21830cee5ef22701f9641a4418d04c0414aeff08876b34ab56"
+                        + "a1d425a1225833549adb841b51c9b3176a272bdebba1d078478f62b397f33c8d");
+    }
+
+    @Test
+    void rfc6070StyleVectorsForSha256() {
+        // RFC 6070 inputs, HMAC-SHA256 outputs
+        assertVector("password", "salt", 1, 32, "120fb6cffcf8b32c43e7225256c4f837a86548c92ccc35480805987cb70be17b");
+        assertVector("password", "salt", 2, 32, "ae4d0c95af6b46d32d0adff928f06dd02a303f8ef3c251dfd6e2d85a95474c43");
+        assertVector("password", "salt", 4096, 32, "c5e478d59288c841aa530db6845c4c8d962893a001ce4e11a4963873aa98134a");
+        assertVector("passwordPASSWORDpassword", "saltSALTsaltSALTsaltSALTsaltSALTsalt", 4096, 40,
+                "348c89dbcbd32b2f32d814b8116e84cf2b17347ebc1800181c4e2a1fb8dd53e1c635518c7dac47e9");
+        assertVector("pass\0word", "sa\0lt", 4096, 16, "89b69d0516f829893c696226650a8687");
+    }
+
+    @Test
+    void matchesTheJdkOnRandomInputs() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 300; i++) {
+            // long passwords exercise the hashed-key path, non-ASCII chars the UTF-8 encoding (incl. lone surrogates)
+            char[] password = new char[1 + random.nextInt(100)];
+            for (int j = 0; j < password.length; j++) {
+                password[j] = (char) (random.nextInt(3) == 0 ? random.nextInt(0xFFFF) : 32 + random.nextInt(90));
+            }
+            byte[] salt = new byte[1 + random.nextInt(80)];
+            random.nextBytes(salt);
+            int iterations = 1 + random.nextInt(50);
+            int keyLengthBits = 8 * (1 + random.nextInt(100));
+
+            assertArrayEquals(jdk(password, salt, iterations, keyLengthBits),
+                    Pbkdf2Sha256.derive(password, salt, iterations, keyLengthBits),
+                    "case " + i);
+        }
+    }
+
+    @Test
+    void verifiesHashesProducedByTheJdkImplementation() throws Exception {
+        byte[] salt = new byte[16];
+        new Random(7).nextBytes(salt);
+        byte[] derived = jdk("correct-horse-battery-staple".toCharArray(), salt, 210_000, 256);
+        String stored = "pbkdf2$210000$" + Base64.getEncoder().encodeToString(salt) + "$" + Base64.getEncoder().encodeToString(derived);
+
+        assertTrue(PasswordEncrypter.verify("correct-horse-battery-staple", stored));
+        assertFalse(PasswordEncrypter.verify("correct-horse-battery-stapler", stored));
+    }
+
+    private static void assertVector(String password, String salt, int iterations, int keyLength, String expectedHex) {
+        byte[] actual = Pbkdf2Sha256.derive(password.toCharArray(), salt.getBytes(StandardCharsets.UTF_8), iterations, keyLength * 8);
+        assertEquals(expectedHex, HexFormat.of().formatHex(actual));
+    }
+
+    private static byte[] jdk(char[] password, byte[] salt, int iterations, int keyLengthBits) throws Exception {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, keyLengthBits);
+        return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+    }
+}